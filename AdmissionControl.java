@@ -0,0 +1,234 @@
+//******************************************************************************
+//
+//  Developer:     Cory Munselle
+//
+//  Project #:     Project 4
+//
+//  File Name:     AdmissionControl.java
+//
+//  Course:        COSC 4301 - Modern Programming
+//
+//  Due Date:      3/11/2022
+//
+//  Instructor:    Fred Kumi
+//
+//  Description:   Decides whether the server takes on a request or answers
+//                 "busy" straight away, so an overloaded server keeps the
+//                 requests it does answer fast instead of letting every one
+//                 of them wait. A request is turned away when too many are
+//                 already being worked on, or when it has already waited
+//                 longer than the latency target since it arrived.
+//
+//  Notes:         The limit on requests being worked on at once adapts to
+//                 the latency the server actually sees (AIMD): it grows by
+//                 one every limit's worth of answers that meet the target
+//                 while the limit is full, and shrinks by a tenth, at most
+//                 once per target interval, when answers miss it.
+//
+//                 What the limit counts is connections being answered. On the
+//                 blocking engine a session holds its place from when a
+//                 request is let in until its reply has been written. An NIO
+//                 event loop answers requests one after another on one
+//                 thread, so there a connection holds its place until the end
+//                 of the select round that read its requests; the rest of its
+//                 requests that round only go through tryContinue. Either
+//                 way a pipelining client takes one place, not one per frame.
+//
+//                 Requests for very long sequences are let in only while
+//                 the server is at most half as busy as the limit and half
+//                 as far behind as the target, so they are the first to be
+//                 turned away. The closed forms make them no slower to
+//                 answer, but they are what an overloaded server can best
+//                 afford to put off.
+//
+//                 Options:
+//                   --latency-target  milliseconds from arrival to answer
+//                                     the server aims for; 0 turns admission
+//                                     control off (0)
+//                   --max-inflight    highest the limit can grow (1024)
+//                   --large-range     sequences longer than this are shed
+//                                     first (1000000)
+//
+//******************************************************************************
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleUnaryOperator;
+
+public final class AdmissionControl
+{
+    private static final int DEFAULT_MAX_INFLIGHT = 1024;
+    private static final int DEFAULT_LARGE_RANGE = 1_000_000;
+    private static final int MIN_LIMIT = 4;
+    private static final int INITIAL_LIMIT = 64;
+    private static final double DECREASE_RATIO = 0.9;
+    // large requests only get this share of the limit and the target
+    private static final double LARGE_SHARE = 0.5;
+
+    private final long targetNanos;
+    private final int maxLimit;
+    private final long largeRange;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    // the limit as double bits, so it can grow by fractions
+    private final AtomicLong limitBits;
+    private final AtomicLong lastDecrease = new AtomicLong(System.nanoTime());
+    private final LongAdder shed = new LongAdder();
+
+    //***************************************************************
+    //
+    //  Method:       Constructor
+    //
+    //  Description:  Reads the admission control options
+    //
+    //  Parameters:   CommandLineOptions options
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    public AdmissionControl(CommandLineOptions options) {
+        this.targetNanos = TimeUnit.MILLISECONDS.toNanos(options.getInt("latency-target", 0));
+        if (targetNanos <= 0) {
+            throw new IllegalArgumentException("Admission control needs a positive --latency-target");
+        }
+        this.maxLimit = Math.max(MIN_LIMIT, options.getInt("max-inflight", DEFAULT_MAX_INFLIGHT));
+        this.largeRange = options.getInt("large-range", DEFAULT_LARGE_RANGE);
+        this.limitBits = new AtomicLong(Double.doubleToLongBits(Math.min(INITIAL_LIMIT, maxLimit)));
+    }
+
+    //***************************************************************
+    //
+    //  Method:       tryAcquire
+    //
+    //  Description:  Lets a request in if there's room under the limit
+    //                and it hasn't already waited past the target. A
+    //                request that gets in has to be released once it is
+    //                answered.
+    //
+    //  Parameters:   long arrivedAt (System.nanoTime), long count of
+    //                values in its sequence (0 if not known)
+    //
+    //  Returns:      boolean true if the request may go ahead
+    //
+    //**************************************************************
+    public boolean tryAcquire(long arrivedAt, long count) {
+        double limit = getLimit() * (count > largeRange ? LARGE_SHARE : 1.0);
+
+        if (!tryContinue(arrivedAt, count)) {
+            return false;
+        }
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= limit) {
+                shed.increment();
+                return false;
+            }
+        }
+        while (!inFlight.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    //***************************************************************
+    //
+    //  Method:       tryContinue
+    //
+    //  Description:  Lets in another request from a caller that already
+    //                holds a place under the limit, as long as it hasn't
+    //                waited past the target. Nothing has to be released.
+    //
+    //  Parameters:   long arrivedAt (System.nanoTime), long count of
+    //                values in its sequence (0 if not known)
+    //
+    //  Returns:      boolean true if the request may go ahead
+    //
+    //**************************************************************
+    public boolean tryContinue(long arrivedAt, long count) {
+        long waited = System.nanoTime() - arrivedAt;
+
+        if (waited > (count > largeRange ? targetNanos * LARGE_SHARE : targetNanos)) {
+            // already too late to meet the target; a quick busy beats a slow answer
+            shed.increment();
+            return false;
+        }
+        return true;
+    }
+
+    //***************************************************************
+    //
+    //  Method:       release
+    //
+    //  Description:  Marks a request as answered and moves the limit
+    //                toward what the server can handle
+    //
+    //  Parameters:   long arrivedAt (System.nanoTime)
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    public void release(long arrivedAt) {
+        release(arrivedAt, 1);
+    }
+
+    //***************************************************************
+    //
+    //  Method:       release
+    //
+    //  Description:  release for count places that were all taken at
+    //                the same time, such as the connections answered in
+    //                one NIO select round
+    //
+    //  Parameters:   long arrivedAt (System.nanoTime), int count
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    public void release(long arrivedAt, int count) {
+        if (count <= 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        int busy = inFlight.getAndAdd(-count);
+
+        if (now - arrivedAt > targetNanos) {
+            long last = lastDecrease.get();
+            // one cut per interval, or a burst of late answers would take the limit to the floor
+            if (now - last >= targetNanos && lastDecrease.compareAndSet(last, now)) {
+                updateLimit(limit -> Math.max(MIN_LIMIT, limit * DECREASE_RATIO));
+            }
+        }
+        else if (busy >= (int) getLimit()) {
+            // only worth growing while the limit is what's holding requests back
+            updateLimit(limit -> Math.min(maxLimit, limit + (double) count / limit));
+        }
+    }
+
+    private void updateLimit(DoubleUnaryOperator change) {
+        long bits;
+        long updated;
+        do {
+            bits = limitBits.get();
+            updated = Double.doubleToLongBits(change.applyAsDouble(Double.longBitsToDouble(bits)));
+        }
+        while (!limitBits.compareAndSet(bits, updated));
+    }
+
+    public double getLimit() {
+        return Double.longBitsToDouble(limitBits.get());
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getShed() {
+        return shed.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("limit=%.1f in_flight=%d shed=%d", getLimit(), getInFlight(), getShed());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,527 @@
+//******************************************************************************
+//
+//  Developer:     Cory Munselle
+//
+//  Project #:     Project 4
+//
+//  File Name:     AsyncClient.java
+//
+//  Course:        COSC 4301 - Modern Programming
+//
+//  Due Date:      3/11/2022
+//
+//  Instructor:    Fred Kumi
+//
+//  Description:   The client as a non-blocking library. compute returns a
+//                 CompletableFuture straight away instead of waiting for the
+//                 reply, so a program can have thousands of requests out at
+//                 once without a thread parked on each one. Every connection
+//                 has one I/O thread that packs waiting requests into as few
+//                 writes as it can, reads the replies, and completes the
+//                 futures in the order the requests went out (the server
+//                 always answers a connection in order).
+//
+//  Notes:         Connections use the binary protocol and are opened the
+//                 first time a request needs one. When a connection is lost
+//                 the requests already sent on it fail with the IOException,
+//                 and the ones not sent yet go out on a new connection. Every
+//                 request is a calculation, so asking again is always safe.
+//
+//                 A timed out or cancelled request that hasn't gone out yet
+//                 is never sent; one that has still gets its reply, which is
+//                 thrown away.
+//
+//                 Futures are completed on the I/O thread, so anything slow
+//                 done with a result should use the *Async methods of the
+//                 future rather than block that thread.
+//
+//                 Options (all times in milliseconds):
+//                   --connections      connections to spread requests over (1)
+//                   --connect-timeout  per connection attempt (2000)
+//                   --request-timeout  a request fails after this, 0 to wait
+//                                      forever (5000)
+//                   --max-outstanding  requests a connection holds before new
+//                                      ones are turned away (10000)
+//                   --backoff-base     first reconnect waits up to this (50)
+//                   --backoff-max      no reconnect waits longer (2000)
+//
+//******************************************************************************
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class AsyncClient implements AutoCloseable
+{
+    private static final int DEFAULT_CONNECTIONS = 1;
+    private static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 2000;
+    private static final int DEFAULT_REQUEST_TIMEOUT_MILLIS = 5000;
+    private static final int DEFAULT_MAX_OUTSTANDING = 10000;
+    private static final int DEFAULT_BACKOFF_BASE_MILLIS = 50;
+    private static final int DEFAULT_BACKOFF_MAX_MILLIS = 2000;
+    // requests written per flush at most, and replies read per read
+    private static final int BUFFER_FRAMES = 1024;
+
+    private final InetSocketAddress server;
+    private final int connectTimeoutMillis;
+    private final long requestTimeoutMillis;
+    private final int maxOutstanding;
+    private final Backoff backoff;
+
+    private final Connection[] connections;
+    private final AtomicInteger nextConnection = new AtomicInteger();
+    private volatile boolean closed;
+
+    //***************************************************************
+    //
+    //  Method:       Constructor
+    //
+    //  Description:  Starts the I/O thread for every connection. No
+    //                connection is opened until a request needs it.
+    //
+    //  Parameters:   String host, int port, CommandLineOptions options
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    public AsyncClient(String host, int port, CommandLineOptions options) throws IOException {
+        this.server = new InetSocketAddress(host, port);
+        this.connectTimeoutMillis = options.getInt("connect-timeout", DEFAULT_CONNECT_TIMEOUT_MILLIS);
+        this.requestTimeoutMillis = Math.max(0, options.getInt("request-timeout", DEFAULT_REQUEST_TIMEOUT_MILLIS));
+        this.maxOutstanding = Math.max(1, options.getInt("max-outstanding", DEFAULT_MAX_OUTSTANDING));
+        this.backoff = new Backoff(options.getInt("backoff-base", DEFAULT_BACKOFF_BASE_MILLIS),
+                options.getInt("backoff-max", DEFAULT_BACKOFF_MAX_MILLIS));
+
+        this.connections = new Connection[Math.max(1, options.getInt("connections", DEFAULT_CONNECTIONS))];
+        for (int i = 0; i < connections.length; i++) {
+            connections[i] = new Connection(i + 1);
+        }
+    }
+
+    //***************************************************************
+    //
+    //  Method:       compute
+    //
+    //  Description:  Sends a triple and returns a future for its
+    //                statistics, failing after the default request
+    //                timeout. A triple the server turns down fails
+    //                the future with an InvalidRequestException.
+    //
+    //  Parameters:   int number1, int number2, int number3
+    //
+    //  Returns:      CompletableFuture of Statistics
+    //
+    //**************************************************************
+    public CompletableFuture<Statistics> compute(int number1, int number2, int number3) {
+        return compute(number1, number2, number3, requestTimeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    //***************************************************************
+    //
+    //  Method:       compute
+    //
+    //  Description:  compute with its own timeout (0 for none). Never
+    //                blocks; if the connection already holds
+    //                --max-outstanding requests the future fails right
+    //                away with a RejectedExecutionException.
+    //
+    //  Parameters:   int number1, int number2, int number3,
+    //                long timeout, TimeUnit unit
+    //
+    //  Returns:      CompletableFuture of Statistics
+    //
+    //**************************************************************
+    public CompletableFuture<Statistics> compute(int number1, int number2, int number3, long timeout, TimeUnit unit) {
+        Call call = new Call(number1, number2, number3);
+
+        if (closed) {
+            call.completeExceptionally(new IOException("The client is closed"));
+            return call;
+        }
+        // spread evenly; replies come back in order per connection, so any one will do
+        Connection connection = connections[Math.floorMod(nextConnection.getAndIncrement(), connections.length)];
+        if (!connection.submit(call)) {
+            call.completeExceptionally(new RejectedExecutionException(
+                    "More than " + maxOutstanding + " requests are waiting on one connection"));
+            return call;
+        }
+        if (closed) {
+            // close raced this call; its I/O thread may already have failed what was left and gone
+            call.completeExceptionally(new IOException("The client is closed"));
+            return call;
+        }
+        if (timeout > 0) {
+            call.orTimeout(timeout, unit);
+        }
+        return call;
+    }
+
+    //***************************************************************
+    //
+    //  Method:       close
+    //
+    //  Description:  Stops taking requests, lets the ones already
+    //                taken finish (up to the request timeout, or for as
+    //                long as they take if it is 0), says Bye and closes
+    //                every connection
+    //
+    //  Parameters:   None
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    @Override
+    public void close() {
+        closed = true;
+        for (Connection connection : connections) {
+            connection.wakeUp();
+        }
+        try {
+            for (Connection connection : connections) {
+                connection.thread.join();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    //******************************************************************************
+    //
+    //  Class:         Call
+    //
+    //  Description:   One request and the future its reply completes
+    //
+    //******************************************************************************
+    private static final class Call extends CompletableFuture<Statistics>
+    {
+        private final int number1;
+        private final int number2;
+        private final int number3;
+
+        private Call(int number1, int number2, int number3) {
+            this.number1 = number1;
+            this.number2 = number2;
+            this.number3 = number3;
+        }
+    }
+
+    //******************************************************************************
+    //
+    //  Class:         Connection
+    //
+    //  Description:   One connection and the I/O thread that owns it. Callers
+    //                 only ever touch submitted, outstanding and the selector's
+    //                 wakeup; everything else belongs to the thread.
+    //
+    //******************************************************************************
+    private final class Connection implements Runnable
+    {
+        private final ConcurrentLinkedQueue<Call> submitted = new ConcurrentLinkedQueue<>();
+        // taken but not answered, failed or skipped yet
+        private final AtomicInteger outstanding = new AtomicInteger();
+        // set by the first submit since the thread last looked, so only that one wakes it
+        private final AtomicBoolean wakeupPending = new AtomicBoolean();
+        private final Selector selector;
+        private final Thread thread;
+
+        // sent and waiting for a reply, oldest first
+        private final ArrayDeque<Call> inFlight = new ArrayDeque<>();
+        private final ByteBuffer out = ByteBuffer.allocateDirect(BUFFER_FRAMES * BinaryProtocol.REQUEST_BYTES);
+        private final ByteBuffer in = ByteBuffer.allocateDirect(BUFFER_FRAMES * BinaryProtocol.RESPONSE_BYTES);
+        private SocketChannel channel;
+        private SelectionKey key;
+        private int failures;
+
+        private Connection(int number) throws IOException {
+            this.selector = Selector.open();
+            this.thread = new Thread(this, "async-client-" + number);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        private boolean submit(Call call) {
+            if (outstanding.incrementAndGet() > maxOutstanding) {
+                outstanding.decrementAndGet();
+                return false;
+            }
+            submitted.add(call);
+            if (wakeupPending.compareAndSet(false, true)) {
+                selector.wakeup();
+            }
+            return true;
+        }
+
+        private void wakeUp() {
+            selector.wakeup();
+        }
+
+        //***************************************************************
+        //
+        //  Method:       run
+        //
+        //  Description:  The I/O thread. Connects when there is work,
+        //                sends what has been submitted, completes the
+        //                futures from the replies, and after close
+        //                finishes what's left and hangs up.
+        //
+        //  Parameters:   None
+        //
+        //  Returns:      N/A
+        //
+        //**************************************************************
+        @Override
+        public void run() {
+            long closeDeadline = 0L;
+
+            while (true) {
+                if (closed && closeDeadline == 0L) {
+                    closeDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(requestTimeoutMillis);
+                }
+                // a request timeout of 0 means waiting forever, so close does too
+                boolean expired = requestTimeoutMillis > 0 && System.nanoTime() - closeDeadline > 0;
+                if (closed && ((submitted.isEmpty() && inFlight.isEmpty()) || expired)) {
+                    break;
+                }
+                try {
+                    if (channel == null && !submitted.isEmpty()) {
+                        connect();
+                    }
+                    wakeupPending.set(false);
+                    if (channel != null) {
+                        send();
+                        key.interestOps(out.position() > 0 ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+                    }
+                    selector.select(closed ? 100 : 0);
+
+                    if (key != null && key.isValid() && key.isReadable()) {
+                        receive();
+                    }
+                    selector.selectedKeys().clear();
+                }
+                catch (IOException e) {
+                    disconnect(e);
+                }
+            }
+
+            IOException failure = new IOException("The client was closed before the reply came back");
+            failAll(inFlight, failure);
+            failAll(submitted, failure);
+            if (channel != null) {
+                sayBye();
+            }
+            disconnect(failure);
+            try {
+                selector.close();
+            }
+            catch (IOException e) {
+                // nothing left to clean up
+            }
+        }
+
+        //***************************************************************
+        //
+        //  Method:       connect
+        //
+        //  Description:  Opens the connection and switches it to the
+        //                binary protocol, backing off after a failure.
+        //                If it can't connect, the requests waiting for it
+        //                fail.
+        //
+        //  Parameters:   None
+        //
+        //  Returns:      N/A
+        //
+        //**************************************************************
+        private void connect() {
+            if (failures > 0) {
+                try {
+                    backoff.sleep(failures - 1);
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            SocketChannel opened = null;
+            try {
+                opened = SocketChannel.open();
+                opened.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                // the handshake is a blocking text exchange; only then does it go non-blocking
+                opened.socket().connect(server, connectTimeoutMillis);
+                opened.socket().setSoTimeout(connectTimeoutMillis);
+                DataOutputStream handshakeOut = new DataOutputStream(opened.socket().getOutputStream());
+                handshakeOut.writeUTF(BinaryProtocol.HELLO);
+                handshakeOut.flush();
+                if (!new DataInputStream(opened.socket().getInputStream()).readUTF().equals(BinaryProtocol.ACCEPTED)) {
+                    throw new IOException("The server doesn't speak the binary protocol");
+                }
+                opened.configureBlocking(false);
+                key = opened.register(selector, SelectionKey.OP_READ);
+                channel = opened;
+                failures = 0;
+            }
+            catch (IOException e) {
+                failures++;
+                if (opened != null) {
+                    try {
+                        opened.close();
+                    }
+                    catch (IOException closeFailure) {
+                        e.addSuppressed(closeFailure);
+                    }
+                }
+                failAll(submitted, e);
+            }
+        }
+
+        //***************************************************************
+        //
+        //  Method:       send
+        //
+        //  Description:  Packs submitted requests into the out buffer and
+        //                writes until the buffer is empty or the socket
+        //                won't take more. Requests that timed out or
+        //                were cancelled before their turn are dropped.
+        //
+        //  Parameters:   None
+        //
+        //  Returns:      N/A
+        //
+        //**************************************************************
+        private void send() throws IOException {
+            while (true) {
+                Call call;
+                while (out.remaining() >= BinaryProtocol.REQUEST_BYTES && (call = submitted.poll()) != null) {
+                    if (call.isDone()) {
+                        outstanding.decrementAndGet();
+                        continue;
+                    }
+                    BinaryProtocol.putRequest(out, BinaryProtocol.COMPUTE, call.number1, call.number2, call.number3);
+                    inFlight.add(call);
+                }
+                if (out.position() == 0) {
+                    return;
+                }
+                out.flip();
+                channel.write(out);
+                boolean stalled = out.hasRemaining();
+                out.compact();
+                if (stalled) {
+                    // OP_WRITE picks the rest up once the socket drains
+                    return;
+                }
+            }
+        }
+
+        //***************************************************************
+        //
+        //  Method:       receive
+        //
+        //  Description:  Reads whatever replies have arrived and completes
+        //                the oldest waiting future with each one
+        //
+        //  Parameters:   None
+        //
+        //  Returns:      N/A
+        //
+        //**************************************************************
+        private void receive() throws IOException {
+            if (channel.read(in) < 0) {
+                throw new IOException("The server closed the connection");
+            }
+            in.flip();
+            while (in.remaining() >= BinaryProtocol.RESPONSE_BYTES) {
+                int status = in.get() & 0xFF;
+                long sum = in.getLong();
+                double mean = in.getDouble();
+                double stddev = in.getDouble();
+
+                if (!RequestStatus.isKnown(status)) {
+                    // a newer or broken server; the stream can't be trusted past this
+                    throw new IOException("The server sent an unknown status " + status);
+                }
+                Call call = inFlight.poll();
+                if (call == null) {
+                    throw new IOException("The server sent a reply nobody asked for");
+                }
+                outstanding.decrementAndGet();
+                // a no-op if it already timed out or was cancelled
+                if (status == RequestStatus.OK) {
+                    call.complete(new Statistics(0, sum, mean, stddev));
+                }
+                else {
+                    call.completeExceptionally(new InvalidRequestException(status));
+                }
+            }
+            in.compact();
+        }
+
+        private void sayBye() {
+            out.clear();
+            BinaryProtocol.putRequest(out, BinaryProtocol.BYE, 0, 0, 0);
+            out.flip();
+            try {
+                // a 13 byte write into an idle socket goes through in one go
+                channel.write(out);
+            }
+            catch (IOException e) {
+                // it's being closed either way
+            }
+        }
+
+        //***************************************************************
+        //
+        //  Method:       disconnect
+        //
+        //  Description:  Closes the connection and fails every request
+        //                that was already sent on it. Requests not sent
+        //                yet wait for the next connection.
+        //
+        //  Parameters:   IOException cause
+        //
+        //  Returns:      N/A
+        //
+        //**************************************************************
+        private void disconnect(IOException cause) {
+            failAll(inFlight, cause);
+            out.clear();
+            in.clear();
+            if (key != null) {
+                key.cancel();
+                key = null;
+            }
+            if (channel != null) {
+                try {
+                    channel.close();
+                }
+                catch (IOException e) {
+                    // nothing left to clean up
+                }
+                channel = null;
+                failures++;
+            }
+        }
+
+        private void failAll(Queue<Call> calls, IOException cause) {
+            Call call;
+            while ((call = calls.poll()) != null) {
+                outstanding.decrementAndGet();
+                call.completeExceptionally(cause);
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,81 @@
+//******************************************************************************
+//
+//  Developer:     Cory Munselle
+//
+//  Project #:     Project 4
+//
+//  File Name:     Backoff.java
+//
+//  Course:        COSC 4301 - Modern Programming
+//
+//  Due Date:      3/11/2022
+//
+//  Instructor:    Fred Kumi
+//
+//  Description:   How long to wait before trying again after a failure. The
+//                 limit doubles with every attempt up to a cap, and the actual
+//                 wait is picked at random below it ("full jitter"), so a
+//                 crowd of clients that lost the server at the same moment
+//                 doesn't come back at the same moment too.
+//
+//******************************************************************************
+
+import java.util.concurrent.ThreadLocalRandom;
+
+public final class Backoff
+{
+    private final long baseMillis;
+    private final long maxMillis;
+
+    //***************************************************************
+    //
+    //  Method:       Constructor
+    //
+    //  Description:  The first retry waits up to baseMillis, and no
+    //                retry ever waits longer than maxMillis
+    //
+    //  Parameters:   long baseMillis, long maxMillis
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    public Backoff(long baseMillis, long maxMillis) {
+        if (baseMillis <= 0 || maxMillis < baseMillis) {
+            throw new IllegalArgumentException("Backoff needs 0 < base <= max, got " + baseMillis + " and " + maxMillis);
+        }
+        this.baseMillis = baseMillis;
+        this.maxMillis = maxMillis;
+    }
+
+    //***************************************************************
+    //
+    //  Method:       delayMillis
+    //
+    //  Description:  A random wait for the given retry, counting from 0
+    //
+    //  Parameters:   int attempt
+    //
+    //  Returns:      long milliseconds
+    //
+    //**************************************************************
+    public long delayMillis(int attempt) {
+        // past 2^20 times the base the cap has long since been reached
+        long ceiling = Math.min(maxMillis, baseMillis << Math.min(attempt, 20));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    //***************************************************************
+    //
+    //  Method:       sleep
+    //
+    //  Description:  Waits out the delay for the given retry
+    //
+    //  Parameters:   int attempt
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    public void sleep(int attempt) throws InterruptedException {
+        Thread.sleep(delayMillis(attempt));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,174 @@
+//******************************************************************************
+//
+//  Developer:     Cory Munselle
+//
+//  Project #:     Project 4
+//
+//  File Name:     BinaryProtocol.java
+//
+//  Course:        COSC 4301 - Modern Programming
+//
+//  Due Date:      3/11/2022
+//
+//  Instructor:    Fred Kumi
+//
+//  Description:   The compact binary protocol a client can switch to instead of
+//                 sending text. The client asks for it by sending HELLO as an
+//                 ordinary text frame; if the server answers ACCEPTED both sides
+//                 use fixed width binary frames from then on.
+//
+//  Notes:         Request:  1 byte type, then number1, number2, number3 as
+//                           big endian ints (13 bytes).
+//                 Response: 1 byte status (see RequestStatus), then the sum as
+//                           a long and the mean and standard deviation as
+//                           doubles (25 bytes). The numbers are zero unless
+//                           the status is OK.
+//                 PING is a heartbeat. Its numbers are ignored and it is
+//                 answered with an OK response holding zeros.
+//
+//                 Over UDP (UdpServerEngine) there is no HELLO. Each datagram
+//                 is one request with an 8 byte request id in front of it
+//                 (21 bytes), and the response comes back with the same id
+//                 in front (33 bytes) so the client can tell which request
+//                 it answers.
+//
+//******************************************************************************
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+public final class BinaryProtocol
+{
+    public static final String HELLO = "Protocol binary 1";
+    public static final String ACCEPTED = "Protocol binary 1 accepted";
+
+    public static final byte COMPUTE = 1;
+    public static final byte BYE = 2;
+    public static final byte PING = 3;
+
+    public static final int REQUEST_BYTES = 13;
+    public static final int RESPONSE_BYTES = 25;
+    public static final int ID_BYTES = 8;
+    public static final int DATAGRAM_REQUEST_BYTES = ID_BYTES + REQUEST_BYTES;
+    public static final int DATAGRAM_RESPONSE_BYTES = ID_BYTES + RESPONSE_BYTES;
+
+    private static final byte[] HELLO_BYTES = HELLO.getBytes(StandardCharsets.US_ASCII);
+
+    private BinaryProtocol() {
+    }
+
+    //***************************************************************
+    //
+    //  Method:       isHello
+    //
+    //  Description:  Checks if a text frame is the request to switch to
+    //                the binary protocol
+    //
+    //  Parameters:   byte array frame, int offset, int length
+    //
+    //  Returns:      boolean hello
+    //
+    //**************************************************************
+    public static boolean isHello(byte[] frame, int offset, int length) {
+        return length == HELLO_BYTES.length && RequestProcessor.startsWith(frame, offset, length, HELLO_BYTES);
+    }
+
+    //***************************************************************
+    //
+    //  Method:       putRequest
+    //
+    //  Description:  Puts one request frame into out. Frames are built
+    //                in a buffer so a whole request, or a whole run of
+    //                them, leaves in a single write.
+    //
+    //  Parameters:   ByteBuffer out, byte type,
+    //                int number1, int number2, int number3
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    public static void putRequest(ByteBuffer out, byte type, int number1, int number2, int number3) {
+        out.put(type);
+        out.putInt(number1);
+        out.putInt(number2);
+        out.putInt(number3);
+    }
+
+    //***************************************************************
+    //
+    //  Method:       answer
+    //
+    //  Description:  Validates a triple and writes the response frame
+    //                for it into out
+    //
+    //  Parameters:   int number1, int number2, int number3, ByteBuffer out
+    //
+    //  Returns:      int status
+    //
+    //**************************************************************
+    public static int answer(int number1, int number2, int number3, ByteBuffer out) {
+        int status = RequestStatus.validate(number1, number2, number3);
+
+        if (status != RequestStatus.OK) {
+            writeStatus(status, out);
+        }
+        else {
+            Statistics stats = StatisticsEngine.compute(number1, number2, number3);
+            out.put((byte) RequestStatus.OK);
+            out.putLong(stats.getSum());
+            out.putDouble(stats.getMean());
+            out.putDouble(stats.getStddev());
+        }
+        return status;
+    }
+
+    //***************************************************************
+    //
+    //  Method:       writeStatus
+    //
+    //  Description:  Writes a response frame that only carries a status
+    //
+    //  Parameters:   int status, ByteBuffer out
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    public static void writeStatus(int status, ByteBuffer out) {
+        out.put((byte) status);
+        out.putLong(0L);
+        out.putDouble(0.0);
+        out.putDouble(0.0);
+    }
+
+    //***************************************************************
+    //
+    //  Method:       readResponse
+    //
+    //  Description:  Reads one response frame. A failed request is
+    //                turned into an InvalidRequestException, and a
+    //                status this build doesn't know into an IOException.
+    //
+    //  Parameters:   DataInputStream in
+    //
+    //  Returns:      Statistics result
+    //
+    //**************************************************************
+    public static Statistics readResponse(DataInputStream in) throws IOException {
+        int status = in.readUnsignedByte();
+        long sum = in.readLong();
+        double mean = in.readDouble();
+        double stddev = in.readDouble();
+
+        if (!RequestStatus.isKnown(status)) {
+            // a newer or broken server; the stream can't be trusted past this
+            throw new IOException("The server sent an unknown status " + status);
+        }
+        if (status != RequestStatus.OK) {
+            throw new InvalidRequestException(status);
+        }
+        // the count isn't on the wire; it only matters to the server
+        return new Statistics(0, sum, mean, stddev);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,101 @@
+//******************************************************************************
+//
+//  Developer:     Cory Munselle
+//
+//  Project #:     Project 4
+//
+//  File Name:     BufferPool.java
+//
+//  Course:        COSC 4301 - Modern Programming
+//
+//  Due Date:      3/11/2022
+//
+//  Instructor:    Fred Kumi
+//
+//  Description:   Keeps a free list of equally sized direct ByteBuffers. Direct
+//                 buffers are expensive to allocate and are only freed by the
+//                 garbage collector, so they are handed back here instead of
+//                 being dropped after every read or write.
+//
+//******************************************************************************
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public final class BufferPool
+{
+    private final int bufferSize;
+    private final int maxPooled;
+    private final ConcurrentLinkedQueue<ByteBuffer> free;
+    private final AtomicInteger pooled;
+
+    //***************************************************************
+    //
+    //  Method:       Constructor
+    //
+    //  Description:  Defines variables for use in the program
+    //
+    //  Parameters:   int bufferSize, int maxPooled
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    public BufferPool(int bufferSize, int maxPooled) {
+        this.bufferSize = bufferSize;
+        this.maxPooled = maxPooled;
+        this.free = new ConcurrentLinkedQueue<>();
+        this.pooled = new AtomicInteger();
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    //***************************************************************
+    //
+    //  Method:       acquire
+    //
+    //  Description:  Hands out a cleared buffer, allocating one only if
+    //                the free list is empty
+    //
+    //  Parameters:   None
+    //
+    //  Returns:      ByteBuffer buffer
+    //
+    //**************************************************************
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = free.poll();
+
+        if (buffer == null) {
+            return ByteBuffer.allocateDirect(bufferSize);
+        }
+        pooled.decrementAndGet();
+        buffer.clear();
+        return buffer;
+    }
+
+    //***************************************************************
+    //
+    //  Method:       release
+    //
+    //  Description:  Returns a buffer to the free list. Anything past
+    //                maxPooled is left for the garbage collector.
+    //
+    //  Parameters:   ByteBuffer buffer
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    public void release(ByteBuffer buffer) {
+        if (buffer.capacity() != bufferSize || !buffer.isDirect()) {
+            return;
+        }
+        if (pooled.incrementAndGet() <= maxPooled) {
+            free.offer(buffer);
+        }
+        else {
+            pooled.decrementAndGet();
+        }
+    }
+}
\ No newline at end of file
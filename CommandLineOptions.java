@@ -0,0 +1,110 @@
+//******************************************************************************
+//
+//  Developer:     Cory Munselle
+//
+//  Project #:     Project 4
+//
+//  File Name:     CommandLineOptions.java
+//
+//  Course:        COSC 4301 - Modern Programming
+//
+//  Due Date:      3/11/2022
+//
+//  Instructor:    Fred Kumi
+//
+//  Description:   Reads --name=value style options off the command line so the
+//                 server and client can be tuned at startup without recompiling.
+//
+//******************************************************************************
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class CommandLineOptions
+{
+    private final Map<String, String> values;
+
+    //***************************************************************
+    //
+    //  Method:       Constructor
+    //
+    //  Description:  Splits every --name=value argument into the map.
+    //                A bare --name is treated as --name=true.
+    //
+    //  Parameters:   String array
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    public CommandLineOptions(String[] argv) {
+        values = new HashMap<>();
+
+        for (String arg : argv) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unrecognized argument: " + arg);
+            }
+            int equals = arg.indexOf('=');
+            if (equals < 0) {
+                values.put(arg.substring(2), "true");
+            }
+            else {
+                values.put(arg.substring(2, equals), arg.substring(equals + 1));
+            }
+        }
+    }
+
+    //***************************************************************
+    //
+    //  Method:       getString
+    //
+    //  Description:  Returns the named option or the default
+    //
+    //  Parameters:   String name, String defaultValue
+    //
+    //  Returns:      String value
+    //
+    //**************************************************************
+    public String getString(String name, String defaultValue) {
+        return values.getOrDefault(name, defaultValue);
+    }
+
+    //***************************************************************
+    //
+    //  Method:       getInt
+    //
+    //  Description:  Returns the named option as an int or the default
+    //
+    //  Parameters:   String name, int defaultValue
+    //
+    //  Returns:      int value
+    //
+    //**************************************************************
+    public int getInt(String name, int defaultValue) {
+        String value = values.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        }
+        catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Option --" + name + " must be a number: " + value);
+        }
+    }
+
+    //***************************************************************
+    //
+    //  Method:       getBoolean
+    //
+    //  Description:  Returns the named option as a boolean or the default
+    //
+    //  Parameters:   String name, boolean defaultValue
+    //
+    //  Returns:      boolean value
+    //
+    //**************************************************************
+    public boolean getBoolean(String name, boolean defaultValue) {
+        String value = values.get(name);
+        return value == null ? defaultValue : Boolean.parseBoolean(value);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,364 @@
+//******************************************************************************
+//
+//  Developer:     Cory Munselle
+//
+//  Project #:     Project 4
+//
+//  File Name:     ConnectionPool.java
+//
+//  Course:        COSC 4301 - Modern Programming
+//
+//  Due Date:      3/11/2022
+//
+//  Instructor:    Fred Kumi
+//
+//  Description:   The client as a library. Keeps a few connections to the
+//                 server open and lends one to each request, so programs can
+//                 call send from any number of threads without paying for a
+//                 new connection every time. A connection is thrown away the
+//                 moment a read or write on it fails or times out, and the
+//                 request goes out again on a fresh one after a jittered
+//                 exponential backoff. A busy reply from an overloaded server
+//                 is retried the same way, on the same connection.
+//
+//  Notes:         Retrying is safe because every request is a calculation
+//                 that doesn't change anything on the server; asking twice
+//                 gets the same answer. Bye is never sent through here, close
+//                 sends it for each pooled connection.
+//
+//                 Options (all times in milliseconds):
+//                   --pool-size        connections kept open (4)
+//                   --pool-wait        wait for a free connection (5000)
+//                   --connect-timeout  per connection attempt (2000)
+//                   --read-timeout     wait for a reply (5000)
+//                   --retries          extra attempts after a failure (3)
+//                   --backoff-base     first retry waits up to this (50)
+//                   --backoff-max      no retry waits longer (2000)
+//                   --max-idle         an idle connection older than this
+//                                      is closed instead of reused (60000),
+//                                      since the server drops quiet clients
+//
+//******************************************************************************
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+public class ConnectionPool implements AutoCloseable
+{
+    private static final int DEFAULT_POOL_SIZE = 4;
+    private static final int DEFAULT_POOL_WAIT_MILLIS = 5000;
+    private static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 2000;
+    private static final int DEFAULT_READ_TIMEOUT_MILLIS = 5000;
+    private static final int DEFAULT_RETRIES = 3;
+    private static final int DEFAULT_BACKOFF_BASE_MILLIS = 50;
+    private static final int DEFAULT_BACKOFF_MAX_MILLIS = 2000;
+    private static final int DEFAULT_MAX_IDLE_MILLIS = 60_000;
+
+    private final InetSocketAddress server;
+    private final int poolWaitMillis;
+    private final int connectTimeoutMillis;
+    private final int readTimeoutMillis;
+    private final int retries;
+    private final Backoff backoff;
+    private final long maxIdleNanos;
+
+    // one permit per connection the pool may have lent out or kept idle
+    private final Semaphore permits;
+    private final ConcurrentLinkedQueue<PooledConnection> idle = new ConcurrentLinkedQueue<>();
+    private volatile boolean closed;
+
+    //***************************************************************
+    //
+    //  Method:       Constructor
+    //
+    //  Description:  Sets the pool up. No connection is opened until
+    //                the first request needs one.
+    //
+    //  Parameters:   String host, int port, CommandLineOptions options
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    public ConnectionPool(String host, int port, CommandLineOptions options) {
+        this.server = new InetSocketAddress(host, port);
+        this.poolWaitMillis = options.getInt("pool-wait", DEFAULT_POOL_WAIT_MILLIS);
+        this.connectTimeoutMillis = options.getInt("connect-timeout", DEFAULT_CONNECT_TIMEOUT_MILLIS);
+        this.readTimeoutMillis = options.getInt("read-timeout", DEFAULT_READ_TIMEOUT_MILLIS);
+        this.retries = Math.max(0, options.getInt("retries", DEFAULT_RETRIES));
+        this.backoff = new Backoff(options.getInt("backoff-base", DEFAULT_BACKOFF_BASE_MILLIS),
+                options.getInt("backoff-max", DEFAULT_BACKOFF_MAX_MILLIS));
+        this.maxIdleNanos = TimeUnit.MILLISECONDS.toNanos(options.getInt("max-idle", DEFAULT_MAX_IDLE_MILLIS));
+        this.permits = new Semaphore(Math.max(1, options.getInt("pool-size", DEFAULT_POOL_SIZE)));
+    }
+
+    //***************************************************************
+    //
+    //  Method:       send
+    //
+    //  Description:  Sends one line, a triple or a batch frame, and
+    //                returns the server's reply. Validation errors are
+    //                ordinary replies; only a broken connection or a
+    //                timeout is retried.
+    //
+    //  Parameters:   String line
+    //
+    //  Returns:      String reply
+    //
+    //**************************************************************
+    public String send(String line) throws IOException {
+        if (line.equals("Bye")) {
+            throw new IllegalArgumentException("Bye is sent by close, not send");
+        }
+        return call(connection -> connection.exchange(line));
+    }
+
+    //***************************************************************
+    //
+    //  Method:       sendBatch
+    //
+    //  Description:  Sends many triples and returns every reply. Up to
+    //                MAX_BATCH triples (and MAX_BATCH_BYTES) share one
+    //                frame each way; if a frame has to be retried only
+    //                that frame goes out again.
+    //
+    //  Parameters:   String array lines, each holding one triple
+    //
+    //  Returns:      String array replies, in the same order as lines
+    //
+    //**************************************************************
+    public String[] sendBatch(String... lines) throws IOException {
+        String[] replies = new String[lines.length];
+
+        for (int start = 0, end; start < lines.length; start = end) {
+            end = Project4Client.batchEnd(lines, start);
+            String reply = send(Project4Client.buildBatch(lines, start, end));
+            Project4Client.splitBatchReply(reply, replies, start, end);
+        }
+        return replies;
+    }
+
+    //***************************************************************
+    //
+    //  Method:       call
+    //
+    //  Description:  Runs one request on a pooled connection, retrying
+    //                on a new connection when the old one fails
+    //
+    //  Parameters:   Exchange exchange
+    //
+    //  Returns:      String reply
+    //
+    //**************************************************************
+    private String call(Exchange exchange) throws IOException {
+        IOException failure = null;
+        String busy = RequestStatus.message(RequestStatus.BUSY);
+
+        for (int attempt = 0; attempt <= retries; attempt++) {
+            if (attempt > 0) {
+                pause(attempt - 1);
+            }
+            borrowPermit();
+            PooledConnection connection = takeIdle();
+            try {
+                if (connection == null) {
+                    connection = open();
+                }
+                String reply = exchange.run(connection);
+                if (closed) {
+                    connection.close();
+                }
+                else {
+                    connection.idleSince = System.nanoTime();
+                    idle.add(connection);
+                }
+                if (reply.equals(busy) && attempt < retries) {
+                    // the connection is fine, the server just shed the request
+                    continue;
+                }
+                return reply;
+            }
+            catch (IOException e) {
+                failure = e;
+                if (connection != null) {
+                    connection.close();
+                    if (connection.reused) {
+                        // a connection that sat idle is likely not the only one that went
+                        // stale (the server restarted, say), so don't try the rest
+                        closeIdle();
+                    }
+                }
+            }
+            finally {
+                permits.release();
+            }
+        }
+        throw failure;
+    }
+
+    private void borrowPermit() throws IOException {
+        if (closed) {
+            throw new IOException("The connection pool is closed");
+        }
+        try {
+            if (!permits.tryAcquire(poolWaitMillis, TimeUnit.MILLISECONDS)) {
+                throw new IOException("No pooled connection came free within " + poolWaitMillis + " ms");
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for a pooled connection");
+        }
+    }
+
+    private void pause(int attempt) throws IOException {
+        try {
+            backoff.sleep(attempt);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted before retrying");
+        }
+    }
+
+    //***************************************************************
+    //
+    //  Method:       open
+    //
+    //  Description:  Opens a new connection with the connect and read
+    //                timeouts applied
+    //
+    //  Parameters:   None
+    //
+    //  Returns:      PooledConnection connection
+    //
+    //**************************************************************
+    private PooledConnection open() throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.connect(server, connectTimeoutMillis);
+            socket.setSoTimeout(readTimeoutMillis);
+            socket.setTcpNoDelay(true);
+            return new PooledConnection(socket);
+        }
+        catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    private PooledConnection takeIdle() {
+        PooledConnection connection;
+
+        while ((connection = idle.poll()) != null) {
+            if (System.nanoTime() - connection.idleSince < maxIdleNanos) {
+                return connection;
+            }
+            connection.close();
+        }
+        return null;
+    }
+
+    private void closeIdle() {
+        PooledConnection connection;
+
+        while ((connection = idle.poll()) != null) {
+            connection.close();
+        }
+    }
+
+    //***************************************************************
+    //
+    //  Method:       close
+    //
+    //  Description:  Says Bye on every idle connection and closes it.
+    //                Requests still running finish, but their
+    //                connections are closed instead of returned.
+    //
+    //  Parameters:   None
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    @Override
+    public void close() {
+        closed = true;
+        PooledConnection connection;
+
+        while ((connection = idle.poll()) != null) {
+            connection.sayBye();
+            connection.close();
+        }
+    }
+
+    //******************************************************************************
+    //
+    //  Interface:     Exchange
+    //
+    //  Description:   One request and its reply on a borrowed connection
+    //
+    //******************************************************************************
+    private interface Exchange
+    {
+        String run(PooledConnection connection) throws IOException;
+    }
+
+    //******************************************************************************
+    //
+    //  Class:         PooledConnection
+    //
+    //  Description:   A socket and its streams. The frame is buffered and
+    //                 flushed whole so each request is a single write.
+    //
+    //******************************************************************************
+    private final class PooledConnection
+    {
+        private final Socket socket;
+        private final DataInputStream inStream;
+        private final DataOutputStream outStream;
+        // false until it has been back in the pool once
+        private boolean reused;
+        private long idleSince;
+
+        private PooledConnection(Socket socket) throws IOException {
+            this.socket = socket;
+            this.inStream = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            this.outStream = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        }
+
+        private String exchange(String line) throws IOException {
+            outStream.writeUTF(line);
+            outStream.flush();
+            String reply = inStream.readUTF();
+            reused = true;
+            return reply;
+        }
+
+        private void sayBye() {
+            try {
+                outStream.writeUTF("Bye");
+                outStream.flush();
+            }
+            catch (IOException e) {
+                // it's being closed either way
+            }
+        }
+
+        private void close() {
+            try {
+                socket.close();
+            }
+            catch (IOException e) {
+                // nothing left to clean up
+            }
+        }
+    }
+}
\ No newline at end of file
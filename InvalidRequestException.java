@@ -0,0 +1,45 @@
+//******************************************************************************
+//
+//  Developer:     Cory Munselle
+//
+//  Project #:     Project 4
+//
+//  File Name:     InvalidRequestException.java
+//
+//  Course:        COSC 4301 - Modern Programming
+//
+//  Due Date:      3/11/2022
+//
+//  Instructor:    Fred Kumi
+//
+//  Description:   Thrown on the client when the server turns a request down.
+//                 The message is the same one a text mode client would print.
+//
+//******************************************************************************
+
+public class InvalidRequestException extends IllegalArgumentException
+{
+    private static final long serialVersionUID = 1L;
+
+    private final int status;
+
+    //***************************************************************
+    //
+    //  Method:       Constructor
+    //
+    //  Description:  Defines variables for use in the program
+    //
+    //  Parameters:   int status
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    public InvalidRequestException(int status) {
+        super(RequestStatus.message(status));
+        this.status = status;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+}
\ No newline at end of file
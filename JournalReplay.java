@@ -0,0 +1,293 @@
+//******************************************************************************
+//
+//  Developer:     Cory Munselle
+//
+//  Project #:     Project 4
+//
+//  File Name:     JournalReplay.java
+//
+//  Course:        COSC 4301 - Modern Programming
+//
+//  Due Date:      3/11/2022
+//
+//  Instructor:    Fred Kumi
+//
+//  Description:   Plays a server's RequestJournal back against a running
+//                 server, started with "Project4Client --replay=<directory>".
+//                 Requests go out with the same spacing they originally
+//                 arrived with (or faster with --speed), spread over a number
+//                 of connections, and every reply is checked against the
+//                 answer the journal recorded (the status that was sent and
+//                 the result as RequestJournal worked it out, not the bytes
+//                 that were sent). With --dump the records are
+//                 printed one per line instead, for looking over offline.
+//
+//  Notes:         Requests that weren't three numbers to begin with are
+//                 journaled without their text, so they are skipped.
+//
+//                 With a speed, latency is measured from when a request was
+//                 due to go out, the same way the load generator does with a
+//                 schedule. At speed 0 there is no schedule, so it is measured
+//                 from the send.
+//
+//                 Options:
+//                   --replay         journal directory
+//                   --host, --port   server to replay against
+//                   --connections    connections to spread the requests over (8)
+//                   --speed          1 keeps the original pace, 10 is ten times
+//                                    faster, 0 sends as fast as possible (1)
+//                   --dump           print the records instead of sending them
+//
+//******************************************************************************
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+public class JournalReplay
+{
+    private static final int DEFAULT_CONNECTIONS = 8;
+    // requests read ahead of the connections sending them
+    private static final int QUEUE_CAPACITY = 10000;
+    private static final int MAX_MISMATCHES_SHOWN = 10;
+    // handed to each connection once the journal runs out
+    private static final Request END = new Request(0L, null, null);
+
+    private final File directory;
+    private final String host;
+    private final int port;
+    private final int connections;
+    private final int speed;
+
+    private final BlockingQueue<Request> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder matches = new LongAdder();
+    private final LongAdder mismatches = new LongAdder();
+    private final LongAdder failedConnections = new LongAdder();
+    private final AtomicInteger liveConnections = new AtomicInteger();
+    private long skipped;
+
+    //***************************************************************
+    //
+    //  Method:       Constructor
+    //
+    //  Description:  Reads the replay settings off the command line
+    //
+    //  Parameters:   CommandLineOptions options
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    public JournalReplay(CommandLineOptions options) {
+        this.directory = new File(options.getString("replay", "."));
+        this.host = options.getString("host", "127.0.0.1");
+        this.port = options.getInt("port", Project4Server.DEFAULT_PORT);
+        this.connections = Math.max(1, options.getInt("connections", DEFAULT_CONNECTIONS));
+        this.speed = Math.max(0, options.getInt("speed", 1));
+
+        if (RequestJournal.segments(directory).length == 0) {
+            throw new IllegalArgumentException("There is no journal in " + directory);
+        }
+    }
+
+    //***************************************************************
+    //
+    //  Method:       dump
+    //
+    //  Description:  Prints every record in the journal as a line of
+    //                text: time, the triple, status, sum, mean and
+    //                standard deviation
+    //
+    //  Parameters:   None
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    public void dump() throws IOException, InterruptedException {
+        for (File segment : RequestJournal.segments(directory)) {
+            RequestJournal.read(segment, (time, number1, number2, number3, status, sum, mean, stddev) ->
+                    System.out.println(time + " " + number1 + " " + number2 + " " + number3 + " " + status
+                            + " " + sum + " " + mean + " " + stddev));
+        }
+    }
+
+    //***************************************************************
+    //
+    //  Method:       run
+    //
+    //  Description:  Starts the connections, feeds them every record
+    //                in the journal on its schedule and prints the
+    //                results
+    //
+    //  Parameters:   None
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    public void run() throws IOException, InterruptedException {
+        System.out.println("Replaying " + directory + " against " + host + ":" + port + " over " + connections
+                + " connections " + (speed == 0 ? "as fast as possible" : "at " + speed + "x speed") + "...");
+
+        List<Thread> threads = new ArrayList<>();
+        liveConnections.set(connections);
+        for (int i = 0; i < connections; i++) {
+            int index = i;
+            Thread thread = new Thread(() -> runConnection(index), "replay-" + (i + 1));
+            threads.add(thread);
+            thread.start();
+        }
+
+        long start = System.nanoTime();
+        // journal time of the first record, so the rest are scheduled relative to it
+        long[] firstTime = {0L};
+        for (File segment : RequestJournal.segments(directory)) {
+            RequestJournal.read(segment, (time, number1, number2, number3, status, sum, mean, stddev) -> {
+                if (status == RequestStatus.INVALID_COUNT || status == RequestStatus.NOT_A_NUMBER) {
+                    skipped++;
+                    return;
+                }
+                if (firstTime[0] == 0L) {
+                    firstTime[0] = time;
+                }
+                long intended = 0L;
+                if (speed != 0) {
+                    intended = start + TimeUnit.MILLISECONDS.toNanos(time - firstTime[0]) / speed;
+                    waitUntil(intended);
+                }
+
+                String expected = status == RequestStatus.OK ? new Statistics(0, sum, mean, stddev).format()
+                                                             : RequestStatus.message(status);
+                hand(new Request(intended, number1 + " " + number2 + " " + number3, expected));
+            });
+        }
+        for (int i = 0; i < connections; i++) {
+            hand(END);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        report(System.nanoTime() - start);
+    }
+
+    //***************************************************************
+    //
+    //  Method:       runConnection
+    //
+    //  Description:  Sends requests off the queue one at a time until
+    //                the journal runs out
+    //
+    //  Parameters:   int index
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    private void runConnection(int index) {
+        try (Socket socket = new Socket(host, port)) {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+            Request request;
+            while ((request = queue.take()) != END) {
+                long intended = speed == 0 ? System.nanoTime() : request.intended;
+                out.writeUTF(request.line);
+                out.flush();
+                String reply = in.readUTF();
+                latency.record(System.nanoTime() - intended);
+                check(request, reply);
+            }
+            out.writeUTF(RequestProcessor.BYE);
+            out.flush();
+        }
+        catch (IOException | InterruptedException e) {
+            failedConnections.increment();
+            System.err.println("Connection " + (index + 1) + " failed: " + e.getMessage());
+        }
+        finally {
+            liveConnections.decrementAndGet();
+        }
+    }
+
+    private void hand(Request request) throws IOException, InterruptedException {
+        while (!queue.offer(request, 100, TimeUnit.MILLISECONDS)) {
+            if (liveConnections.get() == 0) {
+                throw new IOException("Every connection to the server failed");
+            }
+        }
+    }
+
+    private void check(Request request, String reply) {
+        if (reply.equals(request.expected)) {
+            matches.increment();
+            return;
+        }
+        mismatches.increment();
+        if (mismatches.sum() <= MAX_MISMATCHES_SHOWN) {
+            System.err.println("\"" + request.line + "\" was answered differently:\n" + reply
+                    + "\njournaled as:\n" + request.expected);
+        }
+    }
+
+    //***************************************************************
+    //
+    //  Method:       report
+    //
+    //  Description:  Prints the results of the replay
+    //
+    //  Parameters:   long elapsedNanos
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    private void report(long elapsedNanos) {
+        long total = latency.getCount();
+        double elapsed = elapsedNanos / 1e9;
+
+        System.out.println();
+        System.out.printf("Requests:           %d in %.1fs (%.0f/s)%n", total, elapsed, total / elapsed);
+        System.out.printf("Matched journal:    %d%n", matches.sum());
+        System.out.printf("Different replies:  %d%n", mismatches.sum());
+        System.out.printf("Skipped:            %d%n", skipped);
+        System.out.printf("Failed connections: %d%n", failedConnections.sum());
+        System.out.println("Latency:       " + latency.summary());
+    }
+
+    private static void waitUntil(long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    //******************************************************************************
+    //
+    //  Class:         Request
+    //
+    //  Description:   One journaled request on its way to a connection
+    //
+    //******************************************************************************
+    private static final class Request
+    {
+        private final long intended;
+        private final String line;
+        private final String expected;
+
+        private Request(long intended, String line, String expected) {
+            this.intended = intended;
+            this.line = line;
+            this.expected = expected;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,141 @@
+//******************************************************************************
+//
+//  Developer:     Cory Munselle
+//
+//  Project #:     Project 4
+//
+//  File Name:     LatencyHistogram.java
+//
+//  Course:        COSC 4301 - Modern Programming
+//
+//  Description:   Counts how long something took, in nanoseconds, into
+//                 log-linear buckets the way HdrHistogram does: every power of
+//                 two range is split into 64 equal buckets, so any recorded
+//                 value is known to within about 1.5% no matter how big it is.
+//                 Recording is a couple of atomic adds and never blocks, so
+//                 every connection thread can share one histogram.
+//
+//******************************************************************************
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+public final class LatencyHistogram
+{
+    // values below 128 get a bucket each; above that, 64 buckets per power of two
+    private static final int LINEAR_BUCKETS = 128;
+    private static final int SUB_BUCKETS = 64;
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int BUCKETS = LINEAR_BUCKETS + (63 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0L);
+
+    //***************************************************************
+    //
+    //  Method:       record
+    //
+    //  Description:  Adds one measurement. Negative values, which the
+    //                clock can give if it steps, count as zero.
+    //
+    //  Parameters:   long nanos
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    public void record(long nanos) {
+        long value = Math.max(0L, nanos);
+
+        counts.incrementAndGet(bucketOf(value));
+        count.increment();
+        total.add(value);
+        max.accumulate(value);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long samples = count.sum();
+        return samples == 0 ? 0.0 : (double) total.sum() / samples;
+    }
+
+    //***************************************************************
+    //
+    //  Method:       getValueAtPercentile
+    //
+    //  Description:  Finds the value that percentile of the measurements
+    //                are at or below. The answer is the top of the
+    //                bucket it falls in, so it never understates.
+    //
+    //  Parameters:   double percentile (0 to 100)
+    //
+    //  Returns:      long nanos
+    //
+    //**************************************************************
+    public long getValueAtPercentile(double percentile) {
+        long samples = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            samples += counts.get(i);
+        }
+        if (samples == 0) {
+            return 0L;
+        }
+
+        long target = Math.max(1L, (long) Math.ceil(percentile / 100.0 * samples));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return Math.min(highestValueIn(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    //***************************************************************
+    //
+    //  Method:       summary
+    //
+    //  Description:  One line with the count, mean, main percentiles
+    //                and max, in microseconds
+    //
+    //  Parameters:   None
+    //
+    //  Returns:      String summary
+    //
+    //**************************************************************
+    public String summary() {
+        return String.format("count=%d mean=%.1fus p50=%.1fus p90=%.1fus p99=%.1fus p99.9=%.1fus max=%.1fus",
+                getCount(), getMean() / 1000.0,
+                getValueAtPercentile(50.0) / 1000.0, getValueAtPercentile(90.0) / 1000.0,
+                getValueAtPercentile(99.0) / 1000.0, getValueAtPercentile(99.9) / 1000.0,
+                getMax() / 1000.0);
+    }
+
+    private static int bucketOf(long value) {
+        if (value < LINEAR_BUCKETS) {
+            return (int) value;
+        }
+        // shift so the value lands in [64, 128); each shift is one more power of two
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return LINEAR_BUCKETS + (shift - 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+    }
+
+    private static long highestValueIn(int bucket) {
+        if (bucket < LINEAR_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket - LINEAR_BUCKETS) / SUB_BUCKETS + 1;
+        long sub = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+        return ((sub + 1) << shift) - 1;
+    }
+}
\ No newline at end of file
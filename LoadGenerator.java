@@ -0,0 +1,410 @@
+//******************************************************************************
+//
+//  Developer:     Cory Munselle
+//
+//  Project #:     Project 4
+//
+//  File Name:     LoadGenerator.java
+//
+//  Course:        COSC 4301 - Modern Programming
+//
+//  Due Date:      3/11/2022
+//
+//  Instructor:    Fred Kumi
+//
+//  Description:   Headless load test for the server, started with
+//                 "Project4Client --load". It opens a number of connections,
+//                 sends triples from a workload file or a seeded random
+//                 generator for a fixed time, and prints the throughput, how
+//                 many requests passed or failed validation, and latency
+//                 percentiles.
+//
+//  Notes:         Closed loop (the default) sends a connection's next request
+//                 once the last reply is back. With --rate it also waits for
+//                 the request's turn in a fixed schedule. Open loop sends on
+//                 the schedule no matter how far behind the replies are, the
+//                 way independent users would.
+//
+//                 Whenever there is a schedule, latency is measured from when
+//                 the request was supposed to go out, not when it actually
+//                 did. A server stall then shows up in every request that
+//                 should have been sent during it, instead of only the one
+//                 that was waiting (coordinated omission). The time from the
+//                 actual send is reported too, as service time.
+//
+//******************************************************************************
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+public class LoadGenerator
+{
+    public static final String MODE_CLOSED = "closed";
+    public static final String MODE_OPEN = "open";
+
+    private static final int DEFAULT_CONNECTIONS = 16;
+    private static final int DEFAULT_SECONDS = 10;
+    private static final int DEFAULT_MAX_RANGE = 1000;
+    // open loop connections stop sending once this many requests are unanswered
+    private static final int MAX_OUTSTANDING = 10000;
+
+    private final String host;
+    private final int port;
+    private final int connections;
+    private final int rate;
+    private final int seconds;
+    private final String mode;
+    private final List<String> workload;
+    private final long seed;
+    private final int maxRange;
+    private final int errorPercent;
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LatencyHistogram serviceTime = new LatencyHistogram();
+    private final LongAdder successes = new LongAdder();
+    private final LongAdder validationErrors = new LongAdder();
+    private final LongAdder busyReplies = new LongAdder();
+    private final LongAdder otherReplies = new LongAdder();
+    private final LongAdder failedConnections = new LongAdder();
+
+    //***************************************************************
+    //
+    //  Method:       Constructor
+    //
+    //  Description:  Reads the load test settings off the command line
+    //
+    //  Parameters:   CommandLineOptions options
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    public LoadGenerator(CommandLineOptions options) throws IOException {
+        this.host = options.getString("host", "127.0.0.1");
+        this.port = options.getInt("port", Project4Server.DEFAULT_PORT);
+        this.connections = Math.max(1, options.getInt("connections", DEFAULT_CONNECTIONS));
+        // total requests per second across every connection; 0 is as fast as possible
+        this.rate = Math.max(0, options.getInt("rate", 0));
+        this.seconds = Math.max(1, options.getInt("duration", DEFAULT_SECONDS));
+        this.mode = options.getString("mode", MODE_CLOSED);
+        this.seed = options.getInt("seed", 1);
+        this.maxRange = Math.max(1, options.getInt("max-range", DEFAULT_MAX_RANGE));
+        this.errorPercent = Math.min(100, Math.max(0, options.getInt("error-percent", 0)));
+
+        String file = options.getString("workload", null);
+        this.workload = file == null ? null : readWorkload(file);
+
+        if (!mode.equals(MODE_CLOSED) && !mode.equals(MODE_OPEN)) {
+            throw new IllegalArgumentException("Unknown mode: " + mode + " (expected closed or open)");
+        }
+        if (mode.equals(MODE_OPEN) && rate == 0) {
+            throw new IllegalArgumentException("Open loop needs a target --rate");
+        }
+    }
+
+    //***************************************************************
+    //
+    //  Method:       run
+    //
+    //  Description:  Starts every connection, waits for the test to
+    //                finish and prints the results
+    //
+    //  Parameters:   None
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    public void run() throws InterruptedException {
+        System.out.println("Sending " + (rate == 0 ? "as fast as possible" : rate + " requests/s") + " over "
+                + connections + " " + mode + " loop connections to " + host + ":" + port + " for "
+                + seconds + "s...");
+
+        List<Thread> threads = new ArrayList<>();
+        // every connection starts on the same clock so the schedules interleave evenly
+        long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+        long end = start + TimeUnit.SECONDS.toNanos(seconds);
+        for (int i = 0; i < connections; i++) {
+            int index = i;
+            Thread thread = new Thread(() -> runConnection(index, start, end), "load-" + (i + 1));
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        report(System.nanoTime() - start);
+    }
+
+    //***************************************************************
+    //
+    //  Method:       runConnection
+    //
+    //  Description:  Drives one connection from start until end
+    //
+    //  Parameters:   int index, long start, long end
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    private void runConnection(int index, long start, long end) {
+        // each connection is its own slice of the total rate, offset so they don't all send at once
+        long interval = rate == 0 ? 0L : TimeUnit.SECONDS.toNanos(connections) / rate;
+        long first = start + (interval * index) / connections;
+        Workload requests = new Workload(index);
+
+        try (Socket socket = new Socket(host, port)) {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+            if (mode.equals(MODE_OPEN)) {
+                runOpenLoop(in, out, requests, first, interval, end);
+            }
+            else {
+                runClosedLoop(in, out, requests, first, interval, end);
+                out.writeUTF(RequestProcessor.BYE);
+                out.flush();
+            }
+        }
+        catch (IOException | InterruptedException e) {
+            failedConnections.increment();
+            System.err.println("Connection " + (index + 1) + " failed: " + e.getMessage());
+        }
+    }
+
+    //***************************************************************
+    //
+    //  Method:       runClosedLoop
+    //
+    //  Description:  One request at a time. With a rate, each request
+    //                also waits for its slot in the schedule.
+    //
+    //  Parameters:   DataInputStream in, DataOutputStream out,
+    //                Workload requests, long first, long interval,
+    //                long end
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    private void runClosedLoop(DataInputStream in, DataOutputStream out, Workload requests,
+                               long first, long interval, long end) throws IOException {
+        waitUntil(first);
+        for (long sent = 0; ; sent++) {
+            long intended = interval == 0 ? System.nanoTime() : first + sent * interval;
+            if (intended >= end) {
+                break;
+            }
+            waitUntil(intended);
+
+            long sendTime = System.nanoTime();
+            out.writeUTF(requests.next());
+            out.flush();
+            String reply = in.readUTF();
+            long now = System.nanoTime();
+
+            record(reply, now - intended, now - sendTime);
+        }
+    }
+
+    //***************************************************************
+    //
+    //  Method:       runOpenLoop
+    //
+    //  Description:  Sends on the schedule while a second thread reads
+    //                the replies. The server answers in order, so each
+    //                reply belongs to the oldest request still waiting.
+    //                Sends Bye itself once the schedule runs out.
+    //
+    //  Parameters:   DataInputStream in, DataOutputStream out,
+    //                Workload requests, long first, long interval,
+    //                long end
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    private void runOpenLoop(DataInputStream in, DataOutputStream out, Workload requests,
+                             long first, long interval, long end) throws IOException, InterruptedException {
+        // intended and actual send times of each request still waiting for its reply
+        BlockingQueue<long[]> outstanding = new ArrayBlockingQueue<>(MAX_OUTSTANDING);
+        Thread reader = new Thread(() -> {
+            try {
+                while (true) {
+                    String reply = in.readUTF();
+                    long now = System.nanoTime();
+                    long[] times = outstanding.take();
+                    record(reply, now - times[0], now - times[1]);
+                }
+            }
+            catch (EOFException e) {
+                // the server hangs up after answering everything sent before Bye
+                if (!outstanding.isEmpty()) {
+                    failedConnections.increment();
+                    System.err.println(outstanding.size() + " replies never came back on " + Thread.currentThread().getName());
+                }
+            }
+            catch (IOException | InterruptedException e) {
+                failedConnections.increment();
+                System.err.println("Lost replies on " + Thread.currentThread().getName() + ": " + e.getMessage());
+            }
+        }, Thread.currentThread().getName() + "-reader");
+        reader.start();
+
+        long sent = 0;
+        for (long intended = first; intended < end; intended = first + sent * interval) {
+            waitUntil(intended);
+            // put blocks when the server is hopelessly behind, which still shows in the latency
+            outstanding.put(new long[] {intended, System.nanoTime()});
+            out.writeUTF(requests.next());
+            out.flush();
+            sent++;
+        }
+        // Bye goes out right behind the last request; the reader stops once its reply is in
+        out.writeUTF(RequestProcessor.BYE);
+        out.flush();
+        reader.join();
+    }
+
+    //***************************************************************
+    //
+    //  Method:       record
+    //
+    //  Description:  Sorts a reply into success, validation error, busy or
+    //                something else and records its timings
+    //
+    //  Parameters:   String reply, long latencyNanos, long serviceNanos
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    private void record(String reply, long latencyNanos, long serviceNanos) {
+        latency.record(latencyNanos);
+        serviceTime.record(serviceNanos);
+
+        if (reply.startsWith("Sum: ")) {
+            successes.increment();
+        }
+        else if (isValidationError(reply)) {
+            validationErrors.increment();
+        }
+        else if (reply.equals(RequestStatus.message(RequestStatus.BUSY))) {
+            busyReplies.increment();
+        }
+        else {
+            otherReplies.increment();
+        }
+    }
+
+    private static boolean isValidationError(String reply) {
+        for (int status = RequestStatus.INVALID_COUNT; status <= RequestStatus.UNKNOWN_REQUEST; status++) {
+            if (RequestStatus.message(status).equals(reply)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //***************************************************************
+    //
+    //  Method:       report
+    //
+    //  Description:  Prints the results of the run
+    //
+    //  Parameters:   long elapsedNanos
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    private void report(long elapsedNanos) {
+        long total = latency.getCount();
+        double elapsed = elapsedNanos / 1e9;
+
+        System.out.println();
+        System.out.printf("Requests:           %d in %.1fs (%.0f/s)%n", total, elapsed, total / elapsed);
+        System.out.printf("Successes:          %d%n", successes.sum());
+        System.out.printf("Validation errors:  %d%n", validationErrors.sum());
+        System.out.printf("Busy replies:       %d%n", busyReplies.sum());
+        System.out.printf("Other replies:      %d%n", otherReplies.sum());
+        System.out.printf("Failed connections: %d%n", failedConnections.sum());
+        if (rate == 0) {
+            // without a schedule there is nothing to correct against
+            System.out.println("Latency:       " + latency.summary());
+        }
+        else {
+            System.out.println("Latency (corrected for coordinated omission):");
+            System.out.println("               " + latency.summary());
+            System.out.println("Service time:  " + serviceTime.summary());
+        }
+    }
+
+    private static void waitUntil(long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    private static List<String> readWorkload(String file) throws IOException {
+        List<String> lines = new ArrayList<>();
+
+        for (String line : Files.readAllLines(Paths.get(file))) {
+            if (!line.isBlank() && !line.equals(RequestProcessor.BYE)) {
+                lines.add(line);
+            }
+        }
+        if (lines.isEmpty()) {
+            throw new IllegalArgumentException("The workload file " + file + " has no requests in it");
+        }
+        return lines;
+    }
+
+    //******************************************************************************
+    //
+    //  Class:         Workload
+    //
+    //  Description:   The requests one connection sends. From a workload file
+    //                 each connection starts at a different line and wraps
+    //                 around; otherwise each one gets its own seeded generator,
+    //                 so a run can be repeated exactly.
+    //
+    //******************************************************************************
+    private final class Workload
+    {
+        private final Random random;
+        private int line;
+
+        private Workload(int index) {
+            this.random = new Random(seed + index);
+            this.line = workload == null ? 0 : (int) ((long) index * workload.size() / connections);
+        }
+
+        private String next() {
+            if (workload != null) {
+                String request = workload.get(line);
+                line = (line + 1) % workload.size();
+                return request;
+            }
+            int number1 = 1 + random.nextInt(maxRange);
+            int number2 = number1 + 1 + random.nextInt(maxRange);
+            int number3 = 1 + random.nextInt(2);
+            if (random.nextInt(100) < errorPercent) {
+                // the wrong way round, so the server has to turn it down
+                return number2 + " " + number1 + " " + number3;
+            }
+            return number1 + " " + number2 + " " + number3;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,904 @@
+//******************************************************************************
+//
+//  Developer:     Cory Munselle
+//
+//  Project #:     Project 4
+//
+//  File Name:     NioServerEngine.java
+//
+//  Course:        COSC 4301 - Modern Programming
+//
+//  Due Date:      3/11/2022
+//
+//  Instructor:    Fred Kumi
+//
+//  Description:   Non-blocking server engine. One thread accepts connections
+//                 and deals them out to a few selector event loops, so a client
+//                 that is idle or slow costs a registered key instead of a
+//                 whole thread stuck in readUTF. Frames are decoded straight out
+//                 of pooled direct buffers and replies go out with gathering
+//                 writes. The wire format is the same writeUTF framing the
+//                 blocking engine uses, so Project4Client works with either.
+//
+//******************************************************************************
+
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class NioServerEngine
+{
+    // partial frames can be up to a full writeUTF frame long
+    private static final int READ_BUFFER_BYTES = Utf8Frames.MAX_FRAME_BYTES;
+    private static final int WRITE_BUFFER_BYTES = 8 * 1024;
+    private static final int MAX_POOLED_BUFFERS = 1024;
+    // most buffers a single gathering write will hand to the kernel
+    private static final int MAX_GATHER = 64;
+    // how often a draining loop wakes up to check its deadline
+    private static final long DRAIN_POLL_MILLIS = 100;
+    // timeouts are checked this often at most, and at least four times per timeout
+    private static final long MAX_SWEEP_MILLIS = 1000;
+    // how long accepting pauses after a client couldn't be accepted
+    private static final long ACCEPT_RETRY_MILLIS = 50;
+
+    private final ServerSocketChannel serverChannel;
+    private final EventLoop[] loops;
+    private final ServerContext context;
+    private final ServerMetrics metrics;
+    private final ServerLog log;
+    private final RequestJournal journal;
+    private final AdmissionControl admission;
+    private final long idleTimeoutNanos;
+    private final long readTimeoutNanos;
+    // 0 when neither timeout is on
+    private final long sweepMillis;
+    private volatile boolean running;
+    private volatile boolean draining;
+    private volatile long drainDeadline;
+    private final CountDownLatch loopsStopped;
+
+    //***************************************************************
+    //
+    //  Method:       Constructor
+    //
+    //  Description:  Binds the server channel and creates the event
+    //                loops. Nothing is accepted until run is called.
+    //
+    //  Parameters:   int port, int loopCount, int backlog,
+    //                ServerContext context
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    public NioServerEngine(int port, int loopCount, int backlog, ServerContext context) throws IOException {
+        this.context = context;
+        this.metrics = context.getMetrics();
+        this.log = context.getLog();
+        this.journal = context.getJournal();
+        this.admission = context.getAdmission();
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(context.getIdleTimeoutMillis());
+        this.readTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(context.getReadTimeoutMillis());
+        this.sweepMillis = sweepInterval(context.getIdleTimeoutMillis(), context.getReadTimeoutMillis());
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port), backlog);
+
+        loops = new EventLoop[Math.max(1, loopCount)];
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new EventLoop(Selector.open());
+        }
+        loopsStopped = new CountDownLatch(loops.length);
+    }
+
+    private static long sweepInterval(int idleMillis, int readMillis) {
+        long shortest = Long.MAX_VALUE;
+
+        if (idleMillis > 0) {
+            shortest = idleMillis;
+        }
+        if (readMillis > 0) {
+            shortest = Math.min(shortest, readMillis);
+        }
+        return shortest == Long.MAX_VALUE ? 0 : Math.max(1, Math.min(MAX_SWEEP_MILLIS, shortest / 4));
+    }
+
+    //***************************************************************
+    //
+    //  Method:       run
+    //
+    //  Description:  Starts the event loops and accepts connections on
+    //                the calling thread until the engine is closed
+    //
+    //  Parameters:   None
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    public void run() throws IOException {
+        running = true;
+        for (int i = 0; i < loops.length; i++) {
+            Thread thread = new Thread(loops[i], "nio-loop-" + (i + 1));
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        int next = 0;
+        try {
+            while (running) {
+                SocketChannel channel;
+                try {
+                    channel = serverChannel.accept();
+                }
+                catch (ClosedChannelException e) {
+                    throw e;
+                }
+                catch (IOException e) {
+                    // out of file descriptors, or a client that gave up before it was taken
+                    log.warn("Failed to accept a client: " + e.getMessage());
+                    pauseAccepting();
+                    continue;
+                }
+                try {
+                    channel.configureBlocking(false);
+                    channel.socket().setTcpNoDelay(true);
+                }
+                catch (IOException e) {
+                    // most likely the client reset before it was set up; the others are fine
+                    log.warn("Failed to set up a client: " + e.getMessage());
+                    try {
+                        channel.close();
+                    }
+                    catch (IOException ignored) {
+                        // it was never handed to a loop, so there is nothing else to clean up
+                    }
+                    continue;
+                }
+                // plain round robin; every loop ends up with about the same number of clients
+                loops[next].register(channel);
+                next = (next + 1) % loops.length;
+            }
+        }
+        catch (ClosedChannelException e) {
+            // close() or shutdown() was called, nothing to report
+        }
+    }
+
+    //***************************************************************
+    //
+    //  Method:       pauseAccepting
+    //
+    //  Description:  Waits a moment after a failed accept, so running
+    //                out of file descriptors doesn't turn the accept
+    //                loop into a busy loop filling the log
+    //
+    //  Parameters:   None
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    private static void pauseAccepting() {
+        try {
+            Thread.sleep(ACCEPT_RETRY_MILLIS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    //***************************************************************
+    //
+    //  Method:       shutdown
+    //
+    //  Description:  Stops accepting and lets the event loops finish
+    //                the requests they already have. A client is
+    //                closed once every complete request it sent has
+    //                been answered and written; anyone still connected
+    //                after drainNanos is cut off. Returns once every
+    //                loop has stopped.
+    //
+    //  Parameters:   long drainNanos
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    public void shutdown(long drainNanos) throws IOException {
+        drainDeadline = System.nanoTime() + drainNanos;
+        draining = true;
+        serverChannel.close();
+        for (EventLoop loop : loops) {
+            loop.selector.wakeup();
+        }
+
+        try {
+            // the loops give up on their own at the deadline; the extra second
+            // covers closing whatever was left
+            if (!loopsStopped.await(TimeUnit.NANOSECONDS.toMillis(drainNanos) + 1000, TimeUnit.MILLISECONDS)) {
+                log.warn("The event loops did not stop in time.");
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        running = false;
+    }
+
+    //***************************************************************
+    //
+    //  Method:       close
+    //
+    //  Description:  Stops accepting and shuts the event loops down
+    //
+    //  Parameters:   None
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    public void close() throws IOException {
+        running = false;
+        serverChannel.close();
+        for (EventLoop loop : loops) {
+            loop.selector.wakeup();
+        }
+    }
+
+    //******************************************************************************
+    //
+    //  Class:         Connection
+    //
+    //  Description:   Everything one client needs between selector wakeups: the
+    //                 unfinished frame it has sent so far and the replies that
+    //                 haven't been written yet.
+    //
+    //******************************************************************************
+    private static final class Connection
+    {
+        private final SocketChannel channel;
+        private final RequestProcessor processor;
+        private final RateLimiter limiter;
+
+        // when bytes last moved either way, and when the unfinished frame started
+        private long lastActive;
+        private long partialSince;
+
+        // only held while a frame is split across reads, so idle clients hold no buffer
+        private ByteBuffer partial;
+        // replies ready to write (flipped) and the one still being filled
+        private final ArrayDeque<ByteBuffer> queued = new ArrayDeque<>();
+        private ByteBuffer tail;
+        private boolean closing;
+        // switched on once the client asks for the binary protocol
+        private boolean binary;
+        // the event loop round this connection last took a place under the admission limit in
+        private long admittedRound;
+
+        private Connection(SocketChannel channel, RequestProcessor processor, RateLimiter limiter) {
+            this.channel = channel;
+            this.processor = processor;
+            this.limiter = limiter;
+            this.lastActive = System.nanoTime();
+        }
+    }
+
+    //******************************************************************************
+    //
+    //  Class:         EventLoop
+    //
+    //  Description:   One selector and the thread that spins it. All of the
+    //                 connections registered here are only ever touched by this
+    //                 thread.
+    //
+    //******************************************************************************
+    private final class EventLoop implements Runnable
+    {
+        private final Selector selector;
+        private final ConcurrentLinkedQueue<SocketChannel> pending = new ConcurrentLinkedQueue<>();
+
+        private final BufferPool readPool = new BufferPool(READ_BUFFER_BYTES, MAX_POOLED_BUFFERS);
+        private final BufferPool writePool = new BufferPool(WRITE_BUFFER_BYTES, MAX_POOLED_BUFFERS);
+        private final ByteBuffer sharedRead = ByteBuffer.allocateDirect(READ_BUFFER_BYTES);
+
+        private final byte[] frameScratch = new byte[Utf8Frames.MAX_BODY_BYTES];
+        private final char[] decodeScratch = new char[Utf8Frames.MAX_BODY_BYTES];
+        private final byte[] encodeScratch = new byte[Utf8Frames.MAX_FRAME_BYTES];
+        private final ByteBuffer[] gather = new ByteBuffer[MAX_GATHER];
+        private long lastSweep = System.nanoTime();
+        // when select last returned; everything read this round has waited since then
+        private long roundStart;
+        // counts select rounds, so a connection can tell if it was let in this round
+        private long round;
+        // connections let in by admission control this round, released together once it ends
+        private int admittedThisRound;
+
+        private EventLoop(Selector selector) {
+            this.selector = selector;
+        }
+
+        //***************************************************************
+        //
+        //  Method:       register
+        //
+        //  Description:  Queues a freshly accepted channel for this loop.
+        //                Called from the accepting thread.
+        //
+        //  Parameters:   SocketChannel channel
+        //
+        //  Returns:      N/A
+        //
+        //**************************************************************
+        private void register(SocketChannel channel) {
+            pending.add(channel);
+            selector.wakeup();
+        }
+
+        //***************************************************************
+        //
+        //  Method:       run
+        //
+        //  Description:  Waits for ready channels and services them until
+        //                the engine is closed
+        //
+        //  Parameters:   None
+        //
+        //  Returns:      N/A
+        //
+        //**************************************************************
+        @Override
+        public void run() {
+            try {
+                while (running) {
+                    if (draining && drainConnections()) {
+                        break;
+                    }
+                    selector.select(draining ? DRAIN_POLL_MILLIS : sweepMillis);
+                    roundStart = System.nanoTime();
+                    round++;
+                    registerPending();
+
+                    try {
+                        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                        while (keys.hasNext()) {
+                            SelectionKey key = keys.next();
+                            keys.remove();
+                            Connection connection = (Connection) key.attachment();
+                            try {
+                                if (key.isValid() && key.isReadable()) {
+                                    read(key, connection);
+                                }
+                                if (key.isValid() && key.isWritable()) {
+                                    flush(key, connection);
+                                }
+                            }
+                            catch (IOException e) {
+                                log.info("Lost connection to the client " + remoteAddress(connection) + ".");
+                                close(key, connection);
+                            }
+                        }
+                    }
+                    finally {
+                        // the loop answers one request at a time, so a round's connections are what's in flight
+                        if (admission != null) {
+                            admission.release(roundStart, admittedThisRound);
+                        }
+                        admittedThisRound = 0;
+                    }
+                    if (sweepMillis > 0 && System.nanoTime() - lastSweep >= TimeUnit.MILLISECONDS.toNanos(sweepMillis)) {
+                        closeExpired();
+                    }
+                }
+            }
+            catch (IOException e) {
+                log.error("Event loop failed.", e);
+            }
+            finally {
+                for (SelectionKey key : selector.keys()) {
+                    if (key.attachment() instanceof Connection) {
+                        close(key, (Connection) key.attachment());
+                    }
+                }
+                try {
+                    selector.close();
+                }
+                catch (IOException e) {
+                    log.warn("Failed to close the selector.");
+                }
+                loopsStopped.countDown();
+            }
+        }
+
+        //***************************************************************
+        //
+        //  Method:       closeExpired
+        //
+        //  Description:  Closes clients that have sat idle longer than the
+        //                idle timeout, or have left a request half sent
+        //                longer than the read timeout
+        //
+        //  Parameters:   None
+        //
+        //  Returns:      N/A
+        //
+        //**************************************************************
+        private void closeExpired() {
+            long now = System.nanoTime();
+            lastSweep = now;
+
+            for (SelectionKey key : selector.keys()) {
+                if (!key.isValid() || !(key.attachment() instanceof Connection)) {
+                    continue;
+                }
+                Connection connection = (Connection) key.attachment();
+                if (readTimeoutNanos > 0 && connection.partial != null && now - connection.partialSince > readTimeoutNanos) {
+                    log.info("Client " + remoteAddress(connection) + " took too long to send a request. Closing the connection...");
+                    close(key, connection);
+                }
+                else if (idleTimeoutNanos > 0 && now - connection.lastActive > idleTimeoutNanos) {
+                    log.info("Client " + remoteAddress(connection) + " was idle for too long. Closing the connection...");
+                    close(key, connection);
+                }
+            }
+        }
+
+        //***************************************************************
+        //
+        //  Method:       drainConnections
+        //
+        //  Description:  Marks every connection that isn't partway
+        //                through a request to close once its replies are
+        //                written, and closes the ones with nothing left
+        //                to write
+        //
+        //  Parameters:   None
+        //
+        //  Returns:      boolean true once the loop can stop, because
+        //                every client is gone or the deadline has passed
+        //
+        //**************************************************************
+        private boolean drainConnections() {
+            registerPending();
+            if (System.nanoTime() - drainDeadline >= 0) {
+                log.info("Drain deadline passed; closing the remaining clients.");
+                return true;
+            }
+
+            int remaining = 0;
+            for (SelectionKey key : selector.keys()) {
+                if (!key.isValid() || !(key.attachment() instanceof Connection)) {
+                    continue;
+                }
+                Connection connection = (Connection) key.attachment();
+                if (connection.partial == null) {
+                    connection.closing = true;
+                    if (connection.queued.isEmpty() && (connection.tail == null || connection.tail.position() == 0)) {
+                        log.info("Closed the client " + remoteAddress(connection) + " for shutdown.");
+                        close(key, connection);
+                        continue;
+                    }
+                }
+                remaining++;
+            }
+            return remaining == 0;
+        }
+
+        //***************************************************************
+        //
+        //  Method:       registerPending
+        //
+        //  Description:  Registers the channels the acceptor handed over
+        //
+        //  Parameters:   None
+        //
+        //  Returns:      N/A
+        //
+        //**************************************************************
+        private void registerPending() {
+            SocketChannel channel;
+
+            while ((channel = pending.poll()) != null) {
+                try {
+                    channel.register(selector, SelectionKey.OP_READ, new Connection(channel, context.newProcessor(true), context.newRateLimiter()));
+                    metrics.connectionOpened();
+                    log.info("Connected to client " + channel.getRemoteAddress() + ".");
+                }
+                catch (IOException e) {
+                    log.warn("Failed to register a client connection.");
+                    try {
+                        channel.close();
+                    }
+                    catch (IOException ignored) {
+                        // already on the way out
+                    }
+                }
+            }
+        }
+
+        //***************************************************************
+        //
+        //  Method:       read
+        //
+        //  Description:  Reads whatever the client has sent, answers every
+        //                complete frame and keeps any leftover partial
+        //                frame for the next read
+        //
+        //  Parameters:   SelectionKey key, Connection connection
+        //
+        //  Returns:      N/A
+        //
+        //**************************************************************
+        private void read(SelectionKey key, Connection connection) throws IOException {
+            ByteBuffer buffer = connection.partial != null ? connection.partial : sharedRead;
+
+            long readStart = System.nanoTime();
+            int bytes = connection.channel.read(buffer);
+            if (bytes < 0) {
+                log.info("Lost connection to the client " + remoteAddress(connection) + ".");
+                close(key, connection);
+                return;
+            }
+            metrics.recordRead(System.nanoTime() - readStart);
+            metrics.addBytesIn(bytes);
+            connection.lastActive = readStart;
+            buffer.flip();
+            decodeFrames(connection, buffer);
+
+            if (buffer.hasRemaining() && !connection.closing) {
+                // the read timeout runs from the first byte of the frame that is still unfinished
+                if (connection.partial == null || buffer.position() > 0) {
+                    connection.partialSince = readStart;
+                }
+                if (buffer == sharedRead) {
+                    connection.partial = readPool.acquire();
+                    connection.partial.put(buffer);
+                }
+                else {
+                    buffer.compact();
+                }
+            }
+            else if (connection.partial != null) {
+                readPool.release(connection.partial);
+                connection.partial = null;
+            }
+            sharedRead.clear();
+
+            // while draining, a client is done once it has no half-read request left
+            if (draining && connection.partial == null) {
+                connection.closing = true;
+            }
+            flush(key, connection);
+        }
+
+        //***************************************************************
+        //
+        //  Method:       decodeFrames
+        //
+        //  Description:  Answers every complete writeUTF frame in the
+        //                buffer and leaves the position at the first byte
+        //                that isn't part of one
+        //
+        //  Parameters:   Connection connection, ByteBuffer buffer
+        //
+        //  Returns:      N/A
+        //
+        //**************************************************************
+        private void decodeFrames(Connection connection, ByteBuffer buffer) throws IOException {
+            while (!connection.closing) {
+                if (connection.binary) {
+                    if (buffer.remaining() < BinaryProtocol.REQUEST_BYTES) {
+                        break;
+                    }
+                    decodeBinary(connection, buffer);
+                    continue;
+                }
+                if (buffer.remaining() < Utf8Frames.HEADER_BYTES) {
+                    break;
+                }
+                int start = buffer.position();
+                int length = Utf8Frames.bodyLength(buffer, start);
+                if (length > context.getMaxFrameBytes()) {
+                    // there's no point waiting for the rest of it
+                    log.info("Client " + remoteAddress(connection) + " sent a " + length
+                            + " byte request; the limit is " + context.getMaxFrameBytes() + ". Closing the connection...");
+                    queueFrame(connection, RequestProcessor.errorReply(RequestStatus.TOO_LARGE, encodeScratch));
+                    metrics.recordStatus(RequestStatus.TOO_LARGE);
+                    buffer.position(buffer.limit());
+                    connection.closing = true;
+                    break;
+                }
+                if (buffer.remaining() < Utf8Frames.HEADER_BYTES + length) {
+                    break;
+                }
+                buffer.get(start + Utf8Frames.HEADER_BYTES, frameScratch, 0, length);
+                buffer.position(start + Utf8Frames.HEADER_BYTES + length);
+
+                if (context.shouldEcho()) {
+                    // basic output so anybody viewing the server console (me) knows what is being sent
+                    log.info("The string sent from the client is: " + Utf8Frames.decode(frameScratch, 0, length, decodeScratch));
+                }
+                if (RequestProcessor.isBye(frameScratch, 0, length)) {
+                    log.info("Client " + remoteAddress(connection) + " said Bye.");
+                    connection.closing = true;
+                }
+                else if (BinaryProtocol.isHello(frameScratch, 0, length)) {
+                    // the client wants the binary protocol; it stays binary until it leaves
+                    queueReply(connection, BinaryProtocol.ACCEPTED);
+                    connection.binary = true;
+                }
+                else if (RequestProcessor.isPing(frameScratch, 0, length)) {
+                    queueReply(connection, RequestProcessor.PONG);
+                }
+                else if (connection.limiter != null && !connection.limiter.tryAcquire()) {
+                    queueFrame(connection, RequestProcessor.errorReply(RequestStatus.RATE_LIMITED, encodeScratch));
+                    metrics.recordStatus(RequestStatus.RATE_LIMITED);
+                }
+                else if (admission != null && !admit(connection, connection.processor.estimateCount(frameScratch, 0, length))) {
+                    queueFrame(connection, RequestProcessor.errorReply(RequestStatus.BUSY, encodeScratch));
+                    metrics.recordStatus(RequestStatus.BUSY);
+                }
+                else {
+                    int replyLength = connection.processor.respond(frameScratch, 0, length, encodeScratch);
+                    queueFrame(connection, replyLength);
+                }
+            }
+        }
+
+        //***************************************************************
+        //
+        //  Method:       decodeBinary
+        //
+        //  Description:  Answers one fixed width binary request, writing
+        //                the response straight into the write buffer
+        //
+        //  Parameters:   Connection connection, ByteBuffer buffer
+        //
+        //  Returns:      N/A
+        //
+        //**************************************************************
+        private void decodeBinary(Connection connection, ByteBuffer buffer) {
+            byte type = buffer.get();
+            int number1 = buffer.getInt();
+            int number2 = buffer.getInt();
+            int number3 = buffer.getInt();
+            if (context.shouldEcho()) {
+                log.info("The numbers sent from the client are: " + number1 + " " + number2 + " " + number3);
+            }
+
+            if (type == BinaryProtocol.BYE) {
+                log.info("Client " + remoteAddress(connection) + " said Bye.");
+                connection.closing = true;
+            }
+            else if (type == BinaryProtocol.PING) {
+                BinaryProtocol.writeStatus(RequestStatus.OK, reserve(connection, BinaryProtocol.RESPONSE_BYTES));
+            }
+            else if (type == BinaryProtocol.COMPUTE && connection.limiter != null && !connection.limiter.tryAcquire()) {
+                BinaryProtocol.writeStatus(RequestStatus.RATE_LIMITED, reserve(connection, BinaryProtocol.RESPONSE_BYTES));
+                metrics.recordStatus(RequestStatus.RATE_LIMITED);
+            }
+            else if (type == BinaryProtocol.COMPUTE && admission != null
+                    && !admit(connection, RequestProcessor.estimateCount(number1, number2, number3))) {
+                BinaryProtocol.writeStatus(RequestStatus.BUSY, reserve(connection, BinaryProtocol.RESPONSE_BYTES));
+                metrics.recordStatus(RequestStatus.BUSY);
+            }
+            else if (type == BinaryProtocol.COMPUTE) {
+                long computeStart = System.nanoTime();
+                int status = BinaryProtocol.answer(number1, number2, number3, reserve(connection, BinaryProtocol.RESPONSE_BYTES));
+                metrics.recordStatus(status);
+                metrics.recordCompute(System.nanoTime() - computeStart);
+                if (journal != null) {
+                    journal.record(number1, number2, number3, status);
+                }
+            }
+            else {
+                // nothing after an unknown frame can be trusted to line up
+                BinaryProtocol.writeStatus(RequestStatus.UNKNOWN_REQUEST, reserve(connection, BinaryProtocol.RESPONSE_BYTES));
+                metrics.recordStatus(RequestStatus.UNKNOWN_REQUEST);
+                connection.closing = true;
+            }
+        }
+
+        //***************************************************************
+        //
+        //  Method:       admit
+        //
+        //  Description:  Asks admission control about a request read this
+        //                round. The first one from a connection takes the
+        //                connection's place under the limit until the round
+        //                ends; the rest only have to be on time.
+        //
+        //  Parameters:   Connection connection, long count
+        //
+        //  Returns:      boolean true if the request may go ahead
+        //
+        //**************************************************************
+        private boolean admit(Connection connection, long count) {
+            if (connection.admittedRound == round) {
+                return admission.tryContinue(roundStart, count);
+            }
+            if (!admission.tryAcquire(roundStart, count)) {
+                return false;
+            }
+            connection.admittedRound = round;
+            admittedThisRound++;
+            return true;
+        }
+
+        //***************************************************************
+        //
+        //  Method:       reserve
+        //
+        //  Description:  Makes sure the connection's current write buffer
+        //                has room for bytes more bytes
+        //
+        //  Parameters:   Connection connection, int bytes
+        //
+        //  Returns:      ByteBuffer tail to write into
+        //
+        //**************************************************************
+        private ByteBuffer reserve(Connection connection, int bytes) {
+            if (connection.tail != null && connection.tail.remaining() < bytes) {
+                connection.tail.flip();
+                connection.queued.add(connection.tail);
+                connection.tail = null;
+            }
+            if (connection.tail == null) {
+                connection.tail = writePool.acquire();
+            }
+            return connection.tail;
+        }
+
+        //***************************************************************
+        //
+        //  Method:       queueReply
+        //
+        //  Description:  Encodes a reply as a writeUTF frame and copies it
+        //                into the connection's pooled write buffers
+        //
+        //  Parameters:   Connection connection, String reply
+        //
+        //  Returns:      N/A
+        //
+        //**************************************************************
+        private void queueReply(Connection connection, String reply) throws UTFDataFormatException {
+            queueFrame(connection, Utf8Frames.encode(reply, encodeScratch, 0));
+        }
+
+        //***************************************************************
+        //
+        //  Method:       queueFrame
+        //
+        //  Description:  Copies the first length bytes of encodeScratch,
+        //                which already hold a whole frame, into the
+        //                connection's pooled write buffers
+        //
+        //  Parameters:   Connection connection, int length
+        //
+        //  Returns:      N/A
+        //
+        //**************************************************************
+        private void queueFrame(Connection connection, int length) {
+            int offset = 0;
+
+            while (offset < length) {
+                if (connection.tail == null) {
+                    connection.tail = writePool.acquire();
+                }
+                int chunk = Math.min(length - offset, connection.tail.remaining());
+                connection.tail.put(encodeScratch, offset, chunk);
+                offset += chunk;
+
+                if (!connection.tail.hasRemaining()) {
+                    connection.tail.flip();
+                    connection.queued.add(connection.tail);
+                    connection.tail = null;
+                }
+            }
+        }
+
+        //***************************************************************
+        //
+        //  Method:       flush
+        //
+        //  Description:  Writes as many queued replies as the socket will
+        //                take in one gathering write. If some are left the
+        //                loop stops reading from the client and waits for
+        //                the socket to drain.
+        //
+        //  Parameters:   SelectionKey key, Connection connection
+        //
+        //  Returns:      N/A
+        //
+        //**************************************************************
+        private void flush(SelectionKey key, Connection connection) throws IOException {
+            if (connection.tail != null && connection.tail.position() > 0) {
+                connection.tail.flip();
+                connection.queued.add(connection.tail);
+                connection.tail = null;
+            }
+
+            while (!connection.queued.isEmpty()) {
+                int count = 0;
+                for (ByteBuffer buffer : connection.queued) {
+                    if (count == MAX_GATHER) {
+                        break;
+                    }
+                    gather[count++] = buffer;
+                }
+                long writeStart = System.nanoTime();
+                long written = connection.channel.write(gather, 0, count);
+                metrics.recordWrite(System.nanoTime() - writeStart);
+                metrics.addBytesOut(written);
+                if (written > 0) {
+                    connection.lastActive = writeStart;
+                }
+
+                while (!connection.queued.isEmpty() && !connection.queued.peek().hasRemaining()) {
+                    writePool.release(connection.queued.poll());
+                }
+                // the socket buffer is full, so finish when it says it can take more
+                if (!connection.queued.isEmpty() && connection.queued.peek().hasRemaining()) {
+                    break;
+                }
+            }
+
+            if (connection.queued.isEmpty()) {
+                if (connection.closing) {
+                    close(key, connection);
+                }
+                else {
+                    key.interestOps(SelectionKey.OP_READ);
+                }
+            }
+            else {
+                key.interestOps(SelectionKey.OP_WRITE);
+            }
+        }
+
+        //***************************************************************
+        //
+        //  Method:       close
+        //
+        //  Description:  Closes a client and hands its buffers back
+        //
+        //  Parameters:   SelectionKey key, Connection connection
+        //
+        //  Returns:      N/A
+        //
+        //**************************************************************
+        private void close(SelectionKey key, Connection connection) {
+            key.cancel();
+            if (connection.partial != null) {
+                readPool.release(connection.partial);
+                connection.partial = null;
+            }
+            if (connection.tail != null) {
+                writePool.release(connection.tail);
+                connection.tail = null;
+            }
+            while (!connection.queued.isEmpty()) {
+                writePool.release(connection.queued.poll());
+            }
+            // the loop's shutdown can get here for a connection that was already closed
+            if (connection.channel.isOpen()) {
+                metrics.connectionClosed();
+            }
+            try {
+                connection.channel.close();
+            }
+            catch (IOException e) {
+                log.warn("Failed to gracefully close the client connection.");
+            }
+        }
+
+        private String remoteAddress(Connection connection) {
+            return String.valueOf(connection.channel.socket().getRemoteSocketAddress());
+        }
+    }
+}
\ No newline at end of file
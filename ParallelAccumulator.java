@@ -0,0 +1,151 @@
+//******************************************************************************
+//
+//  Developer:     Cory Munselle
+//
+//  Project #:     Project 4
+//
+//  File Name:     ParallelAccumulator.java
+//
+//  Course:        COSC 4301 - Modern Programming
+//
+//  Description:   Walks a very long sequence on several cores at once. The
+//                 range is cut into chunks, each chunk is counted into its own
+//                 RunningStatistics, and the chunks are merged in order, which
+//                 keeps the mean and variance as stable as a single pass.
+//
+//  Notes:         Small ranges stay on the calling thread; splitting them
+//                 costs more than it saves. A single call never gets more
+//                 than MAX_CHUNKS chunks, so one huge call can only tie up
+//                 that many pool threads and everyone else still gets a turn.
+//                 The calling thread counts a chunk itself and then takes
+//                 any chunk the pool hasn't started yet, so a call still
+//                 finishes when every pool thread is busy.
+//
+//                 No request the server answers comes through here; they all
+//                 have closed forms. The -ea cross-check only accumulates
+//                 sequences shorter than THRESHOLD, so in practice the split
+//                 is only used by library callers and the benchmarks
+//                 (StatisticsBenchmark.accumulateLarge).
+//
+//******************************************************************************
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongUnaryOperator;
+
+public final class ParallelAccumulator
+{
+    // ranges shorter than this are counted on the calling thread
+    public static final long THRESHOLD = 1L << 20;
+
+    private static final int CORES = Runtime.getRuntime().availableProcessors();
+    public static final int MAX_CHUNKS = Math.max(2, CORES / 2);
+
+    // shared by every request; the workers are daemon threads
+    private static final ForkJoinPool POOL = new ForkJoinPool(CORES);
+
+    private ParallelAccumulator() {
+    }
+
+    //***************************************************************
+    //
+    //  Method:       accumulate
+    //
+    //  Description:  Statistics of term(i) for every i from start up to
+    //                but not including end, split across the pool when
+    //                the range is long enough
+    //
+    //  Parameters:   long start, long end, LongUnaryOperator term
+    //
+    //  Returns:      Statistics result
+    //
+    //**************************************************************
+    public static Statistics accumulate(long start, long end, LongUnaryOperator term) {
+        long length = end - start;
+        if (length < THRESHOLD) {
+            return countRange(start, end, term).toStatistics();
+        }
+
+        int chunkCount = (int) Math.min(MAX_CHUNKS, (length + THRESHOLD - 1) / THRESHOLD);
+        Chunk[] chunks = new Chunk[chunkCount];
+        for (int i = 0; i < chunkCount; i++) {
+            // the first length % chunkCount chunks take one extra value
+            long from = start + length / chunkCount * i + Math.min(i, length % chunkCount);
+            long to = from + length / chunkCount + (i < length % chunkCount ? 1 : 0);
+            chunks[i] = new Chunk(from, to, term);
+        }
+        for (int i = 1; i < chunkCount; i++) {
+            POOL.execute(chunks[i]::run);
+        }
+        for (Chunk chunk : chunks) {
+            chunk.run();
+        }
+
+        RunningStatistics total = new RunningStatistics();
+        try {
+            for (Chunk chunk : chunks) {
+                total.merge(chunk.result.join());
+            }
+        }
+        catch (CompletionException e) {
+            // the same exception a single thread would have thrown
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            // a checked exception thrown sneakily by term; it can only go out wrapped
+            throw e;
+        }
+        return total.toStatistics();
+    }
+
+    private static RunningStatistics countRange(long from, long to, LongUnaryOperator term) {
+        RunningStatistics running = new RunningStatistics();
+
+        for (long i = from; i < to; i++) {
+            running.add(term.applyAsLong(i));
+        }
+        return running;
+    }
+
+    //******************************************************************************
+    //
+    //  Class:         Chunk
+    //
+    //  Description:   One slice of the range. Whoever claims it first, a pool
+    //                 thread or the calling thread, counts it.
+    //
+    //******************************************************************************
+    private static final class Chunk
+    {
+        private final long from;
+        private final long to;
+        private final LongUnaryOperator term;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private final CompletableFuture<RunningStatistics> result = new CompletableFuture<>();
+
+        private Chunk(long from, long to, LongUnaryOperator term) {
+            this.from = from;
+            this.to = to;
+            this.term = term;
+        }
+
+        private void run() {
+            if (!claimed.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                result.complete(countRange(from, to, term));
+            }
+            catch (Throwable e) {
+                // e.g. the sum overflowing; handed to the caller by join. Errors too, or the
+                // caller would wait forever on a chunk that a pool thread died counting
+                result.completeExceptionally(e);
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -15,7 +15,8 @@
 //  Description:   Connects to the server via opened socket. Once connected,
 //                 sends data to the server for processing. Valid data will be
 //                 accepted and the sum, mean, and standard deviation of the data
-//                 will be returned.
+//                 will be returned. Programs that want to talk to the server
+//                 from code should use ConnectionPool instead.
 //
 //  Notes:         I'm going to be calling a generic IOException quite frequently.
 //                 This isn't exactly by choice, but what I see as a necessary evil
@@ -29,10 +30,28 @@
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 public class Project4Client {
+    // a lost server gets about half a minute to come back before the client gives up
+    private static final int CONNECT_ATTEMPTS = 8;
+    private static final int CONNECT_TIMEOUT_MILLIS = 2000;
+    private static final Backoff RECONNECT_BACKOFF = new Backoff(100, 5000);
+    // an idle client pings this often, well inside the server's idle timeout
+    private static final long HEARTBEAT_MILLIS = 30_000;
+    private static final int PING_TIMEOUT_MILLIS = 5000;
+
     // initializing socket and input output streams
     private DataOutputStream outStream = null;
     private DataInputStream inStream = null;
@@ -41,22 +60,57 @@ public class Project4Client {
     private final String address;
     private final int port;
 
+    // in pipelined mode lines are sent without waiting for the previous reply.
+    // The server answers a connection's requests in the order they arrive, so
+    // replies are matched to requests first in, first out.
+    private final boolean pipelined;
+    private final ConcurrentLinkedQueue<CompletableFuture<String>> pending = new ConcurrentLinkedQueue<>();
+    private final Object writeLock = new Object();
+    private Thread reader = null;
+
+    // binary mode is asked for at connect time and only used if the server agrees
+    private final boolean binaryRequested;
+    private boolean binary = false;
+
+    // when the server last answered anything, for the heartbeat
+    private volatile long lastExchange = System.nanoTime();
+    // set once Bye has gone out, so the heartbeat doesn't try to revive the connection
+    private volatile boolean finished = false;
+    // set by the heartbeat when a pipelined connection stops answering; the
+    // input loop reconnects before its next request, since it owns the connection
+    private volatile boolean dead = false;
+
     //***************************************************************
     //
     //  Method:       Constructor
     //
     //  Description:  Defines variables for use in the program
     //
-    //  Parameters:   String address, int port
+    //  Parameters:   String address, int port, boolean pipelined,
+    //                boolean binary
     //
     //  Returns:      N/A
     //
     //**************************************************************
-    public Project4Client(String address, int port) {
+    public Project4Client(String address, int port, boolean pipelined, boolean binary) {
         this.address = address;
         this.port = port;
+        this.pipelined = pipelined;
+        this.binaryRequested = binary;
+        developerInfo();
         // Establishing connection with server
-        establishConnection(address, port);
+        if (!establishConnection(address, port)) {
+            System.err.println("Unable to establish a connection. Terminating...");
+            System.exit(-1);
+        }
+        startHeartbeat();
+        if (pipelined) {
+            startReader();
+            getPipelinedInput();
+        }
+        else {
+            getInput();
+        }
     }
 
     //***************************************************************
@@ -71,53 +125,105 @@ public class Project4Client {
     //
     //**************************************************************
     public static void main(String[] argv) {
-        Project4Client client = new Project4Client("127.0.0.1", 4301);
+        CommandLineOptions options = new CommandLineOptions(argv);
+
+        if (options.getBoolean("load", false)) {
+            // headless load test instead of the console
+            try {
+                new LoadGenerator(options).run();
+            }
+            catch (IOException | InterruptedException e) {
+                System.err.println("Load test failed: " + e.getMessage());
+                System.exit(-1);
+            }
+            return;
+        }
+        if (options.getString("replay", null) != null) {
+            // plays a server journal back instead of the console
+            try {
+                JournalReplay replay = new JournalReplay(options);
+                if (options.getBoolean("dump", false)) {
+                    replay.dump();
+                }
+                else {
+                    replay.run();
+                }
+            }
+            catch (IOException | InterruptedException | IllegalArgumentException e) {
+                System.err.println("Replay failed: " + e.getMessage());
+                System.exit(-1);
+            }
+            return;
+        }
+        if (options.getBoolean("udp", false)) {
+            // single datagrams instead of a connection
+            try (UdpClient client = new UdpClient(options)) {
+                client.run();
+            }
+            catch (IOException e) {
+                System.err.println("Unable to open a UDP socket: " + e.getMessage());
+                System.exit(-1);
+            }
+            return;
+        }
+        boolean pipelined = options.getBoolean("pipelined", false);
+        boolean binary = options.getBoolean("binary", false);
+
+        if (pipelined && binary) {
+            System.out.println("Pipelining only works with the text protocol. Using binary without it.");
+            pipelined = false;
+        }
+        Project4Client client = new Project4Client(options.getString("host", "127.0.0.1"),
+                options.getInt("port", Project4Server.DEFAULT_PORT), pipelined, binary);
     }
 
     //***************************************************************
     //
     //  Method:       establishConnection
     //
-    //  Description:  Attempts to connect to the server
+    //  Description:  Attempts to connect to the server, and asks for the
+    //                binary protocol if it was requested. Only connects;
+    //                the caller goes back to whatever it was doing, so a
+    //                reconnect doesn't start a new input loop on top of
+    //                the old one.
     //
     //  Parameters:   String address, int port
     //
-    //  Returns:      N/A
+    //  Returns:      boolean true if the client is connected
     //
     //**************************************************************
-    public void establishConnection(String address, int port) {
-        developerInfo();
+    public boolean establishConnection(String address, int port) {
         System.out.println("Attempting to establish connection...");
-        int connectionAttempts = 0;
 
-        // The server attempts to connect to the client a maximum of five times
-        while (connection == null && connectionAttempts < 4) {
+        for (int attempt = 0; connection == null && attempt < CONNECT_ATTEMPTS; attempt++) {
+            if (attempt > 0) {
+                // backing off (with jitter) keeps a restarting server from being hammered
+                try {
+                    RECONNECT_BACKOFF.sleep(attempt - 1);
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
             try {
-                connection = new Socket(address, port);
+                connection = new Socket();
+                connection.connect(new InetSocketAddress(address, port), CONNECT_TIMEOUT_MILLIS);
                 outStream = new DataOutputStream(connection.getOutputStream());
                 inStream = new DataInputStream(connection.getInputStream());
+                if (binaryRequested) {
+                    negotiateBinary();
+                }
             } catch (IOException e) {
                 System.err.println("Unable to establish connection. Reattempting...");
-            }
-            // This is fine specifically because the connection attempts are reset at the
-            // beginning of each method call, so the fact that it's still being incremented even
-            // during a successful connection doesn't change anything.
-            // There is a small possibility that the server connects at the last second and the program
-            // still terminates, but reattempting connection multiple times seemed out of the scope
-            // of the assignment regardless so I'm not going to worry about it too much.
-            finally {
-                connectionAttempts += 1;
+                closeQuietly();
             }
         }
-        if (connectionAttempts > 4) {
-            System.err.println("Unable to establish a connection. Terminating...");
-            System.exit(-1);
-        }
-        else {
-            System.out.println("Connection established.");
-            getInput();
+        if (connection == null) {
+            return false;
         }
-
+        System.out.println("Connection established.");
+        return true;
     }
 
     //***************************************************************
@@ -134,26 +240,33 @@ public class Project4Client {
     public void getInput() {
         Scanner userInput = new Scanner(System.in);
         System.out.println("Please supply three positive integers separated by spaces. If you wish to quit, type 'Bye'.");
+        System.out.println("Several sets of three can be sent at once by separating them with ';'.");
         String str = "";
 
         // This loop is responsible for the entire execution of the program.
         while (!str.equals("Bye")) {
             str = userInput.nextLine();
             try {
-                // Writes string to server
-                outStream.writeUTF(str);
-
-                // this is here only because if Bye was typed the program would try to get
-                // input from the server when there was none and the program would crash
-                if (!str.equals("Bye"))
-                    // Read strings coming from the server
-                    getResponse(inStream.readUTF());
+                synchronized (writeLock) {
+                    sendLine(str);
+                }
             }
             catch(IOException e) {
-                System.out.println("Failed to send string to the server. Checking connection...");
+                // a failed read or write is what a dead connection looks like
+                System.out.println("Lost connection to the server. Attempting reconnection...");
+                reconnect();
 
-                // Checks the connection status
-                checkConnection();
+                // every request is just a calculation, so sending it again is safe
+                if (!str.equals("Bye")) {
+                    try {
+                        synchronized (writeLock) {
+                            sendLine(str);
+                        }
+                    }
+                    catch (IOException again) {
+                        System.out.println("Failed to send string to the server: " + again.getMessage());
+                    }
+                }
             }
         }
         // This isn't executed until the user types Bye so there's no logic needed
@@ -162,33 +275,640 @@ public class Project4Client {
 
     //***************************************************************
     //
-    //  Method:       checkConnection
+    //  Method:       sendLine
+    //
+    //  Description:  Sends one typed line and prints the reply. The
+    //                caller holds writeLock.
+    //
+    //  Parameters:   String str
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    private void sendLine(String str) throws IOException {
+        if (str.equals("Bye")) {
+            finished = true;
+        }
+        if (binary && !str.equals("Bye")) {
+            sendBinary(str);
+        }
+        else if (str.indexOf(';') >= 0) {
+            // several triples on one line go out together as a single batch
+            for (String reply : sendBatch(str.split(";", -1))) {
+                getResponse(reply);
+            }
+        }
+        else if (binary) {
+            byte[] bye = new byte[BinaryProtocol.REQUEST_BYTES];
+            bye[0] = BinaryProtocol.BYE;
+            outStream.write(bye);
+        }
+        else {
+            // Writes string to server
+            outStream.writeUTF(str);
+
+            // this is here only because if Bye was typed the program would try to get
+            // input from the server when there was none and the program would crash
+            if (!str.equals("Bye"))
+                // Read strings coming from the server
+                getResponse(inStream.readUTF());
+        }
+        lastExchange = System.nanoTime();
+    }
+
+    //***************************************************************
+    //
+    //  Method:       getPipelinedInput
     //
-    //  Description:  Verifies that the client can still reach the server
+    //  Description:  Same as getInput, but every line is sent as soon as
+    //                it is typed and replies are printed whenever they
+    //                come back, so a pasted or piped batch of lines
+    //                doesn't wait a round trip per line
     //
     //  Parameters:   None
     //
     //  Returns:      N/A
     //
     //**************************************************************
-    public void checkConnection() {
+    public void getPipelinedInput() {
+        Scanner userInput = new Scanner(System.in);
+        System.out.println("Please supply three positive integers separated by spaces. If you wish to quit, type 'Bye'.");
+        System.out.println("Several sets of three can be sent at once by separating them with ';'.");
+        String str = "";
+        CompletableFuture<Void> lastReply = CompletableFuture.completedFuture(null);
+
+        while (!str.equals("Bye") && userInput.hasNextLine()) {
+            str = userInput.nextLine();
+            if (dead && !str.equals("Bye")) {
+                System.out.println("Attempting reconnection...");
+                reconnectPipelined();
+            }
+            if (str.indexOf(';') >= 0) {
+                lastReply = submitBatch(str.split(";", -1)).thenAccept(replies -> {
+                    for (String reply : replies) {
+                        getResponse(reply);
+                    }
+                });
+            }
+            else if (!str.equals("Bye")) {
+                // the reader completes replies in order, so they print in order too
+                lastReply = submit(str).thenAccept(this::getResponse);
+            }
+        }
+        // let everything still in flight come back before leaving
         try {
-            // Checks if the connection IP address is readable with a timeout of 1 second
-            // if it ISN'T reachable, set connection to null and try to connect again.
-            if (connection.getInetAddress().isReachable(1000)) {
-                System.out.println("Lost connection to the server. Attempting reconnection...");
-                connection = null;
-                establishConnection(this.address, this.port);
+            lastReply.join();
+        }
+        catch (CompletionException e) {
+            System.out.println("Some replies were lost: " + e.getCause().getMessage());
+        }
+        if (!dead) {
+            submit("Bye");
+        }
+        closeClient();
+    }
+
+    //***************************************************************
+    //
+    //  Method:       submit
+    //
+    //  Description:  Sends a line without waiting for the reply. Any
+    //                number of lines can be outstanding at once. Bye has
+    //                no reply, so its future completes right away.
+    //
+    //  Parameters:   String line
+    //
+    //  Returns:      CompletableFuture<String> reply
+    //
+    //**************************************************************
+    public CompletableFuture<String> submit(String line) {
+        CompletableFuture<String> reply = new CompletableFuture<>();
+
+        // the future has to be queued in the same order the frame goes out
+        synchronized (writeLock) {
+            try {
+                if (line.equals("Bye")) {
+                    finished = true;
+                    reply.complete(null);
+                }
+                else {
+                    pending.add(reply);
+                    if (dead) {
+                        // the reader is gone, so nothing would ever answer it
+                        throw new IOException("The connection to the server was lost");
+                    }
+                }
+                outStream.writeUTF(line);
+            }
+            catch (IOException e) {
+                if (!finished) {
+                    // the input loop reconnects before its next request
+                    dead = true;
+                }
+                failPending(e);
+                reply.completeExceptionally(e);
             }
         }
-        // It shouldn't ever reach here, but just in case print the stack trace and exit
-        catch (Exception e) {
-            System.err.println("Unknown error occurred. Printing stack trace and terminating...");
-            e.printStackTrace();
+        return reply;
+    }
+
+    //***************************************************************
+    //
+    //  Method:       negotiateBinary
+    //
+    //  Description:  Asks the server to switch this connection to the
+    //                binary protocol. Servers that don't know about it
+    //                answer with an error and the client stays on text.
+    //
+    //  Parameters:   None
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    public void negotiateBinary() throws IOException {
+        outStream.writeUTF(BinaryProtocol.HELLO);
+        binary = inStream.readUTF().equals(BinaryProtocol.ACCEPTED);
+        System.out.println(binary ? "Using the binary protocol." : "The server only speaks text. Using the text protocol.");
+    }
+
+    //***************************************************************
+    //
+    //  Method:       sendBinary
+    //
+    //  Description:  Interactive binary mode. The line is parsed here
+    //                and only a valid triple goes to the server; the
+    //                answer is printed the same way text mode would.
+    //
+    //  Parameters:   String line
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    private void sendBinary(String line) throws IOException {
+        // every triple goes through untouched so it is judged exactly like text mode would
+        String[] lines = line.split(";", -1);
+
+        for (String reply : sendBinaryBatch(lines)) {
+            getResponse(reply);
+        }
+    }
+
+    //***************************************************************
+    //
+    //  Method:       compute
+    //
+    //  Description:  Asks the server for the statistics of one triple
+    //                over the binary protocol
+    //
+    //  Parameters:   int number1, int number2, int number3
+    //
+    //  Returns:      Statistics result
+    //
+    //**************************************************************
+    public Statistics compute(int number1, int number2, int number3) throws IOException {
+        if (!binary) {
+            throw new IllegalStateException("compute needs the binary protocol");
+        }
+        ByteBuffer request = ByteBuffer.allocate(BinaryProtocol.REQUEST_BYTES);
+        BinaryProtocol.putRequest(request, BinaryProtocol.COMPUTE, number1, number2, number3);
+
+        synchronized (writeLock) {
+            outStream.write(request.array());
+            return BinaryProtocol.readResponse(inStream);
+        }
+    }
+
+    //***************************************************************
+    //
+    //  Method:       sendBinaryBatch
+    //
+    //  Description:  Binary version of sendBatch. Lines that don't
+    //                parse are answered here; the rest go out back to
+    //                back in one write and are read back in order.
+    //
+    //  Parameters:   String array lines, each holding one triple
+    //
+    //  Returns:      String array replies, in the same order as lines
+    //
+    //**************************************************************
+    private String[] sendBinaryBatch(String... lines) throws IOException {
+        String[] replies = new String[lines.length];
+        ByteBuffer requests = ByteBuffer.allocate(lines.length * BinaryProtocol.REQUEST_BYTES);
+        int[] numbers = new int[3];
+
+        for (int i = 0; i < lines.length; i++) {
+            int status = TripleParser.parse(lines[i], 0, lines[i].length(), numbers);
+            if (status == RequestStatus.OK) {
+                BinaryProtocol.putRequest(requests, BinaryProtocol.COMPUTE, numbers[0], numbers[1], numbers[2]);
+            }
+            else {
+                replies[i] = RequestStatus.message(status);
+            }
+        }
+
+        synchronized (writeLock) {
+            outStream.write(requests.array(), 0, requests.position());
+            for (int i = 0; i < lines.length; i++) {
+                if (replies[i] == null) {
+                    try {
+                        replies[i] = BinaryProtocol.readResponse(inStream).format();
+                    }
+                    catch (InvalidRequestException e) {
+                        replies[i] = e.getMessage();
+                    }
+                }
+            }
+        }
+        return replies;
+    }
+
+    //***************************************************************
+    //
+    //  Method:       sendBatch
+    //
+    //  Description:  Sends many triples and waits for all of the replies.
+    //                Up to MAX_BATCH triples (and MAX_BATCH_BYTES) share
+    //                one frame each way; longer lists are split into
+    //                several batches.
+    //
+    //  Parameters:   String array lines, each holding one triple
+    //
+    //  Returns:      String array replies, in the same order as lines
+    //
+    //**************************************************************
+    public String[] sendBatch(String... lines) throws IOException {
+        if (binary) {
+            return sendBinaryBatch(lines);
+        }
+        if (pipelined) {
+            try {
+                return submitBatch(lines).join();
+            }
+            catch (CompletionException e) {
+                throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+            }
+        }
+
+        String[] replies = new String[lines.length];
+        for (int start = 0, end; start < lines.length; start = end) {
+            end = batchEnd(lines, start);
+            synchronized (writeLock) {
+                outStream.writeUTF(buildBatch(lines, start, end));
+                splitBatchReply(inStream.readUTF(), replies, start, end);
+            }
+        }
+        return replies;
+    }
+
+    //***************************************************************
+    //
+    //  Method:       sendBatch
+    //
+    //  Description:  sendBatch for triples that are already numbers
+    //
+    //  Parameters:   int array array triples, each holding three numbers
+    //
+    //  Returns:      String array replies, in the same order as triples
+    //
+    //**************************************************************
+    public String[] sendBatch(int[][] triples) throws IOException {
+        String[] lines = new String[triples.length];
+
+        for (int i = 0; i < triples.length; i++) {
+            lines[i] = triples[i][0] + " " + triples[i][1] + " " + triples[i][2];
+        }
+        return sendBatch(lines);
+    }
+
+    //***************************************************************
+    //
+    //  Method:       submitBatch
+    //
+    //  Description:  Pipelined version of sendBatch. Every batch frame
+    //                is sent right away and the future completes once
+    //                all of them have been answered.
+    //
+    //  Parameters:   String array lines, each holding one triple
+    //
+    //  Returns:      CompletableFuture<String[]> replies
+    //
+    //**************************************************************
+    public CompletableFuture<String[]> submitBatch(String... lines) {
+        String[] replies = new String[lines.length];
+        List<CompletableFuture<?>> parts = new ArrayList<>();
+
+        for (int from = 0, to; from < lines.length; from = to) {
+            to = batchEnd(lines, from);
+            int start = from;
+            int end = to;
+            parts.add(submit(buildBatch(lines, start, end)).thenAccept(reply -> splitBatchReply(reply, replies, start, end)));
+        }
+        return CompletableFuture.allOf(parts.toArray(new CompletableFuture<?>[0])).thenApply(ignored -> replies);
+    }
+
+    //***************************************************************
+    //
+    //  Method:       batchEnd
+    //
+    //  Description:  Where the batch starting at lines[start] has to
+    //                end: after MAX_BATCH lines, or before the frame
+    //                would pass MAX_BATCH_BYTES. Lines are sent as typed,
+    //                so long or padded ones fill a frame before the
+    //                count does. A batch always takes at least one line.
+    //
+    //  Parameters:   String array lines, int start
+    //
+    //  Returns:      int end (exclusive)
+    //
+    //**************************************************************
+    static int batchEnd(String[] lines, int start) {
+        int limit = Math.min(lines.length, start + RequestProcessor.MAX_BATCH);
+        int bytes = RequestProcessor.BATCH.length() + 1 + Utf8Frames.encodedLength(lines[start]);
+        int end = start + 1;
+
+        while (end < limit) {
+            bytes += 1 + Utf8Frames.encodedLength(lines[end]);
+            if (bytes > RequestProcessor.MAX_BATCH_BYTES) {
+                break;
+            }
+            end++;
+        }
+        return end;
+    }
+
+    //***************************************************************
+    //
+    //  Method:       buildBatch
+    //
+    //  Description:  Builds the batch frame for lines[start, end)
+    //
+    //  Parameters:   String array lines, int start, int end
+    //
+    //  Returns:      String frame
+    //
+    //**************************************************************
+    static String buildBatch(String[] lines, int start, int end) {
+        StringBuilder frame = new StringBuilder(RequestProcessor.BATCH);
+
+        for (int i = start; i < end; i++) {
+            frame.append(RequestProcessor.SEPARATOR).append(lines[i]);
+        }
+        return frame.toString();
+    }
+
+    //***************************************************************
+    //
+    //  Method:       splitBatchReply
+    //
+    //  Description:  Copies the answers in a batch reply into
+    //                replies[start, end). If the server rejected the
+    //                whole batch its message is given to every line.
+    //
+    //  Parameters:   String reply, String array replies, int start, int end
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    static void splitBatchReply(String reply, String[] replies, int start, int end) {
+        String[] answers = reply.split(String.valueOf(RequestProcessor.SEPARATOR), -1);
+
+        for (int i = start; i < end; i++) {
+            replies[i] = answers.length == end - start ? answers[i - start] : reply;
+        }
+    }
+
+    //***************************************************************
+    //
+    //  Method:       startReader
+    //
+    //  Description:  Starts the thread that reads replies and hands each
+    //                one to the oldest outstanding request
+    //
+    //  Parameters:   None
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    public void startReader() {
+        reader = new Thread(() -> {
+            try {
+                while (true) {
+                    String message = inStream.readUTF();
+                    CompletableFuture<String> reply = pending.poll();
+                    if (reply == null) {
+                        System.err.println("Received a reply nobody asked for: " + message);
+                    }
+                    else {
+                        lastExchange = System.nanoTime();
+                        reply.complete(message);
+                    }
+                }
+            }
+            catch (IOException e) {
+                // the server closed the connection (normally right after Bye)
+                if (!finished) {
+                    dead = true;
+                }
+                failPending(e);
+            }
+        }, "client-reader");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    //***************************************************************
+    //
+    //  Method:       failPending
+    //
+    //  Description:  Fails every outstanding request once the connection
+    //                is gone
+    //
+    //  Parameters:   IOException cause
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    private void failPending(IOException cause) {
+        CompletableFuture<String> reply;
+
+        while ((reply = pending.poll()) != null) {
+            reply.completeExceptionally(cause);
+        }
+    }
+
+    //***************************************************************
+    //
+    //  Method:       startHeartbeat
+    //
+    //  Description:  Starts the thread that pings the server whenever
+    //                the connection has been quiet for HEARTBEAT_MILLIS.
+    //                It keeps the server from dropping a user who is
+    //                just thinking, and finds a dead server before the
+    //                user's next request does.
+    //
+    //  Parameters:   None
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    public void startHeartbeat() {
+        Thread heartbeat = new Thread(() -> {
+            try {
+                while (!finished) {
+                    Thread.sleep(HEARTBEAT_MILLIS);
+                    if (System.nanoTime() - lastExchange >= TimeUnit.MILLISECONDS.toNanos(HEARTBEAT_MILLIS)) {
+                        ping();
+                    }
+                }
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "client-heartbeat");
+        heartbeat.setDaemon(true);
+        heartbeat.start();
+    }
+
+    //***************************************************************
+    //
+    //  Method:       ping
+    //
+    //  Description:  Sends one heartbeat and waits a short while for the
+    //                answer. If none comes the connection is replaced,
+    //                or for a pipelined one marked dead so the input
+    //                loop replaces it.
+    //
+    //  Parameters:   None
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    private void ping() {
+        if (pipelined) {
+            if (dead) {
+                // already waiting for the input loop to reconnect
+                return;
+            }
+            // the reader hands the Pong back like any other reply
+            try {
+                submit(RequestProcessor.PING).get(PING_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            }
+            catch (ExecutionException | TimeoutException e) {
+                if (!finished && !dead) {
+                    // the input loop owns the connection; leave replacing it to that thread
+                    System.out.println("The server stopped answering. It will be reconnected before the next request.");
+                    dead = true;
+                    failPending(new IOException("The server stopped answering"));
+                }
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return;
+        }
+
+        synchronized (writeLock) {
+            if (finished) {
+                return;
+            }
+            try {
+                connection.setSoTimeout(PING_TIMEOUT_MILLIS);
+                if (binary) {
+                    byte[] request = new byte[BinaryProtocol.REQUEST_BYTES];
+                    request[0] = BinaryProtocol.PING;
+                    outStream.write(request);
+                    BinaryProtocol.readResponse(inStream);
+                }
+                else {
+                    outStream.writeUTF(RequestProcessor.PING);
+                    if (!inStream.readUTF().equals(RequestProcessor.PONG)) {
+                        throw new IOException("The server answered a Ping with something else");
+                    }
+                }
+                connection.setSoTimeout(0);
+                lastExchange = System.nanoTime();
+            }
+            catch (IOException e) {
+                System.out.println("The server stopped answering. Attempting reconnection...");
+                reconnect();
+            }
+        }
+    }
+
+    //***************************************************************
+    //
+    //  Method:       reconnect
+    //
+    //  Description:  Drops the broken connection and opens a new one,
+    //                backing off between attempts. Returns to the
+    //                caller's loop once connected.
+    //
+    //  Parameters:   None
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    public void reconnect() {
+        closeQuietly();
+        if (!establishConnection(this.address, this.port)) {
+            System.err.println("Unable to establish a connection. Terminating...");
             System.exit(-1);
         }
     }
 
+    //***************************************************************
+    //
+    //  Method:       reconnectPipelined
+    //
+    //  Description:  reconnect for a pipelined connection. The old
+    //                reader fails whatever it was still waiting on once
+    //                its socket is closed, so it has to be gone before
+    //                a new reader starts and new requests are queued.
+    //
+    //  Parameters:   None
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    private void reconnectPipelined() {
+        synchronized (writeLock) {
+            reconnect();
+            try {
+                reader.join();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            dead = false;
+            startReader();
+        }
+    }
+
+    //***************************************************************
+    //
+    //  Method:       closeQuietly
+    //
+    //  Description:  Drops a connection that has already failed so the
+    //                next attempt starts clean
+    //
+    //  Parameters:   None
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    private void closeQuietly() {
+        if (connection != null) {
+            try {
+                connection.close();
+            }
+            catch (IOException e) {
+                // it was broken already
+            }
+        }
+        connection = null;
+        binary = false;
+    }
+
     //***************************************************************
     //
     //  Method:       getResponse
@@ -221,9 +941,16 @@ public class Project4Client {
         // implement a closeClient method to make sure things were properly closed
         // to the best of my ability
         try {
-            connection.close();
-            inStream.close();
-            outStream.close();
+            // a connection that failed and couldn't be replaced is already gone
+            if (connection != null) {
+                connection.close();
+            }
+            if (inStream != null) {
+                inStream.close();
+            }
+            if (outStream != null) {
+                outStream.close();
+            }
         }
         // Shouldn't get here but in case it does just terminate
         catch (IOException e) {
@@ -0,0 +1,645 @@
+//******************************************************************************
+//
+//  Developer:     Cory Munselle
+//
+//  Project #:     Project 4
+//
+//  File Name:     Project4Proxy.java
+//
+//  Course:        COSC 4301 - Modern Programming
+//
+//  Due Date:      3/11/2022
+//
+//  Instructor:    Fred Kumi
+//
+//  Description:   A small TCP front end for running several Project4Server
+//                 processes as one. Clients connect to the proxy exactly as
+//                 they would to a server; each new connection is handed to
+//                 the healthy backend with the fewest connections, and bytes
+//                 are passed through both ways untouched, so text, batch,
+//                 pipelined and binary clients all work without changes.
+//
+//  Notes:         A health thread pings every backend on a timer. A backend
+//                 that misses --health-failures checks in a row is taken out
+//                 of rotation: it gets no new connections, but the ones it
+//                 already has are left to finish (drained) rather than cut.
+//                 One good check puts it back. A backend that refuses a new
+//                 connection is taken out straight away and the client is
+//                 tried on the next one.
+//
+//                 Options:
+//                   --port             port to listen on (4301)
+//                   --backends         host:port,host:port,...
+//                   --health-interval  milliseconds between checks (1000)
+//                   --health-timeout   milliseconds a check may take (1000)
+//                   --health-failures  missed checks before a backend is
+//                                      taken out (2)
+//                   --drain-seconds    how long clients get to finish when
+//                                      the proxy stops (10)
+//                 plus the --log options of ServerLog.
+//
+//******************************************************************************
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class Project4Proxy
+{
+    private static final int DEFAULT_HEALTH_INTERVAL_MILLIS = 1000;
+    private static final int DEFAULT_HEALTH_TIMEOUT_MILLIS = 1000;
+    private static final int DEFAULT_HEALTH_FAILURES = 2;
+    private static final int DEFAULT_DRAIN_SECONDS = 10;
+    // bytes are passed through as they come, so frames don't have to fit
+    private static final int BUFFER_BYTES = 8 * 1024;
+    private static final int ACCEPT_BACKLOG = 1024;
+    private static final long DRAIN_POLL_MILLIS = 100;
+
+    private final Backend[] backends;
+    private final int healthIntervalMillis;
+    private final int healthTimeoutMillis;
+    private final int healthFailures;
+    private final long drainNanos;
+    private final ServerLog log;
+
+    private final ServerSocketChannel serverChannel;
+    private final Selector selector;
+    // every pair the loop is looking after; only touched by the loop thread
+    private final Set<Pair> pairs = new HashSet<>();
+    // where the next least-connections tie starts looking, so ties rotate
+    private int nextBackend;
+
+    private final AtomicBoolean shuttingDown = new AtomicBoolean();
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private volatile boolean stopping;
+
+    //***************************************************************
+    //
+    //  Method:       Constructor
+    //
+    //  Description:  Reads the backends and options and binds the
+    //                listening port. Nothing is accepted until run.
+    //
+    //  Parameters:   CommandLineOptions options
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    public Project4Proxy(CommandLineOptions options) throws IOException {
+        this.backends = parseBackends(options.getString("backends", ""));
+        this.healthIntervalMillis = Math.max(1, options.getInt("health-interval", DEFAULT_HEALTH_INTERVAL_MILLIS));
+        this.healthTimeoutMillis = Math.max(1, options.getInt("health-timeout", DEFAULT_HEALTH_TIMEOUT_MILLIS));
+        this.healthFailures = Math.max(1, options.getInt("health-failures", DEFAULT_HEALTH_FAILURES));
+        this.drainNanos = TimeUnit.SECONDS.toNanos(options.getInt("drain-seconds", DEFAULT_DRAIN_SECONDS));
+        this.log = new ServerLog(options);
+
+        int port = options.getInt("port", Project4Server.DEFAULT_PORT);
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port), ACCEPT_BACKLOG);
+        serverChannel.configureBlocking(false);
+        selector = Selector.open();
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+        log.info("Proxy listening on port " + port + " for " + backends.length + " backend(s).");
+    }
+
+    //***************************************************************
+    //
+    //  Method:       main
+    //
+    //  Description:  The main method of the program
+    //
+    //  Parameters:   String array
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    public static void main(String[] argv) {
+        Project4Proxy proxy;
+        try {
+            proxy = new Project4Proxy(new CommandLineOptions(argv));
+        }
+        catch (IOException | IllegalArgumentException e) {
+            System.err.println("Unable to start the proxy: " + e.getMessage());
+            System.exit(-1);
+            return;
+        }
+        // Ctrl+C and SIGTERM drain the clients instead of dropping them
+        Runtime.getRuntime().addShutdownHook(new Thread(proxy::shutdown, "shutdown"));
+        proxy.run();
+    }
+
+    private static Backend[] parseBackends(String list) {
+        List<Backend> parsed = new ArrayList<>();
+
+        for (String entry : list.split(",")) {
+            entry = entry.trim();
+            if (entry.isEmpty()) {
+                continue;
+            }
+            int colon = entry.lastIndexOf(':');
+            if (colon <= 0) {
+                throw new IllegalArgumentException("A backend has to be host:port, got " + entry);
+            }
+            try {
+                parsed.add(new Backend(entry.substring(0, colon), Integer.parseInt(entry.substring(colon + 1))));
+            }
+            catch (NumberFormatException e) {
+                throw new IllegalArgumentException("A backend has to be host:port, got " + entry);
+            }
+        }
+        if (parsed.isEmpty()) {
+            throw new IllegalArgumentException("No backends given; use --backends=host:port,host:port");
+        }
+        return parsed.toArray(new Backend[0]);
+    }
+
+    //***************************************************************
+    //
+    //  Method:       run
+    //
+    //  Description:  Starts the health checks and runs the event loop
+    //                until the proxy has stopped and drained
+    //
+    //  Parameters:   None
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    public void run() {
+        Thread health = new Thread(this::checkHealth, "health-check");
+        health.setDaemon(true);
+        health.start();
+
+        long drainDeadline = 0L;
+        try {
+            while (true) {
+                if (stopping && drainDeadline == 0L) {
+                    drainDeadline = System.nanoTime() + drainNanos;
+                    serverChannel.close();
+                    log.info("Stopped accepting. Waiting for " + pairs.size() + " client(s) to finish...");
+                }
+                if (stopping && (pairs.isEmpty() || System.nanoTime() - drainDeadline > 0)) {
+                    break;
+                }
+                selector.select(stopping ? DRAIN_POLL_MILLIS : 0);
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    }
+                    else {
+                        handle(key);
+                    }
+                }
+            }
+        }
+        catch (IOException e) {
+            log.error("The proxy failed.", e);
+        }
+        finally {
+            if (!pairs.isEmpty()) {
+                log.info("Drain deadline passed; closing " + pairs.size() + " remaining client(s).");
+            }
+            for (Pair pair : new ArrayList<>(pairs)) {
+                close(pair);
+            }
+            try {
+                selector.close();
+                serverChannel.close();
+            }
+            catch (IOException e) {
+                log.warn("Failed to close the proxy's channels.");
+            }
+            log.info("Proxy stopped.");
+            log.close();
+            stopped.countDown();
+        }
+    }
+
+    //***************************************************************
+    //
+    //  Method:       shutdown
+    //
+    //  Description:  Stops accepting and waits for the loop to drain
+    //                the clients it has
+    //
+    //  Parameters:   None
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    public void shutdown() {
+        if (shuttingDown.compareAndSet(false, true)) {
+            stopping = true;
+            selector.wakeup();
+        }
+        try {
+            stopped.await();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    //***************************************************************
+    //
+    //  Method:       accept
+    //
+    //  Description:  Takes a new client and starts connecting it to a
+    //                backend
+    //
+    //  Parameters:   None
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    private void accept() throws IOException {
+        SocketChannel client;
+        while ((client = serverChannel.accept()) != null) {
+            try {
+                client.configureBlocking(false);
+                client.socket().setTcpNoDelay(true);
+            }
+            catch (IOException e) {
+                // most likely the client reset before it was set up; the others are fine
+                log.warn("Failed to set up a client: " + e.getMessage());
+                try {
+                    client.close();
+                }
+                catch (IOException ignored) {
+                    // it isn't registered anywhere yet, so there is nothing else to clean up
+                }
+                continue;
+            }
+            Pair pair = new Pair(client);
+            pair.clientKey = client.register(selector, 0, pair);
+            pairs.add(pair);
+            connectUpstream(pair);
+        }
+    }
+
+    //***************************************************************
+    //
+    //  Method:       pickBackend
+    //
+    //  Description:  The healthy backend with the fewest connections
+    //                that this client hasn't already failed on. If
+    //                none are healthy the least busy untried one is
+    //                used anyway, since a check can be out of date.
+    //
+    //  Parameters:   Set of Backend tried
+    //
+    //  Returns:      Backend backend, or null if all were tried
+    //
+    //**************************************************************
+    private Backend pickBackend(Set<Backend> tried) {
+        Backend best = null;
+        Backend fallback = null;
+
+        for (int i = 0; i < backends.length; i++) {
+            Backend backend = backends[(nextBackend + i) % backends.length];
+            if (tried.contains(backend)) {
+                continue;
+            }
+            if (backend.healthy && (best == null || backend.active.get() < best.active.get())) {
+                best = backend;
+            }
+            if (fallback == null || backend.active.get() < fallback.active.get()) {
+                fallback = backend;
+            }
+        }
+        nextBackend = (nextBackend + 1) % backends.length;
+        return best != null ? best : fallback;
+    }
+
+    private void connectUpstream(Pair pair) {
+        while (true) {
+            Backend backend = pickBackend(pair.tried);
+            if (backend == null) {
+                log.warn("No backend would take a client from " + describe(pair.client) + "; closing it.");
+                close(pair);
+                return;
+            }
+            pair.tried.add(backend);
+            try {
+                SocketChannel upstream = SocketChannel.open();
+                upstream.configureBlocking(false);
+                upstream.socket().setTcpNoDelay(true);
+                pair.upstream = upstream;
+                pair.backend = backend;
+                backend.active.incrementAndGet();
+                if (upstream.connect(backend.address)) {
+                    pair.upstreamKey = upstream.register(selector, 0, pair);
+                    pair.connected = true;
+                }
+                else {
+                    pair.upstreamKey = upstream.register(selector, SelectionKey.OP_CONNECT, pair);
+                }
+                updateInterest(pair);
+                return;
+            }
+            catch (IOException e) {
+                upstreamFailed(pair, e);
+            }
+        }
+    }
+
+    //***************************************************************
+    //
+    //  Method:       upstreamFailed
+    //
+    //  Description:  A backend wouldn't take a connection. It is taken
+    //                out of rotation until a health check passes.
+    //
+    //  Parameters:   Pair pair, IOException cause
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    private void upstreamFailed(Pair pair, IOException cause) {
+        Backend backend = pair.backend;
+        if (backend != null) {
+            backend.active.decrementAndGet();
+            backend.markDown(log, "refused a connection: " + cause.getMessage());
+        }
+        closeQuietly(pair.upstream);
+        if (pair.upstreamKey != null) {
+            pair.upstreamKey.cancel();
+        }
+        pair.upstream = null;
+        pair.upstreamKey = null;
+        pair.backend = null;
+    }
+
+    //***************************************************************
+    //
+    //  Method:       handle
+    //
+    //  Description:  Moves whatever bytes it can between the two sides
+    //                of a pair and passes a hang up from one side on to
+    //                the other once everything before it has gone
+    //                through
+    //
+    //  Parameters:   SelectionKey key
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    private void handle(SelectionKey key) {
+        Pair pair = (Pair) key.attachment();
+        try {
+            if (key == pair.upstreamKey && key.isConnectable()) {
+                try {
+                    pair.upstream.finishConnect();
+                    pair.connected = true;
+                }
+                catch (IOException e) {
+                    upstreamFailed(pair, e);
+                    connectUpstream(pair);
+                    return;
+                }
+            }
+            if (pair.connected) {
+                if (!pair.clientDone && pair.toBackend.hasRemaining() && pair.client.read(pair.toBackend) < 0) {
+                    pair.clientDone = true;
+                }
+                if (!pair.backendDone && pair.toClient.hasRemaining() && pair.upstream.read(pair.toClient) < 0) {
+                    pair.backendDone = true;
+                }
+                flush(pair.toBackend, pair.upstream);
+                flush(pair.toClient, pair.client);
+
+                // a side that has hung up and has nothing left to pass on is shut on the other side too
+                if (pair.clientDone && pair.toBackend.position() == 0 && !pair.backendShut) {
+                    pair.upstream.shutdownOutput();
+                    pair.backendShut = true;
+                }
+                if (pair.backendDone && pair.toClient.position() == 0 && !pair.clientShut) {
+                    pair.client.shutdownOutput();
+                    pair.clientShut = true;
+                }
+                if (pair.backendShut && pair.clientShut) {
+                    close(pair);
+                    return;
+                }
+            }
+            updateInterest(pair);
+        }
+        catch (IOException e) {
+            close(pair);
+        }
+    }
+
+    private static void flush(ByteBuffer buffer, SocketChannel to) throws IOException {
+        if (buffer.position() == 0) {
+            return;
+        }
+        buffer.flip();
+        to.write(buffer);
+        buffer.compact();
+    }
+
+    private void updateInterest(Pair pair) {
+        if (!pair.connected) {
+            pair.clientKey.interestOps(0);
+            return;
+        }
+        int clientOps = 0;
+        if (!pair.clientDone && pair.toBackend.hasRemaining()) {
+            clientOps |= SelectionKey.OP_READ;
+        }
+        if (pair.toClient.position() > 0) {
+            clientOps |= SelectionKey.OP_WRITE;
+        }
+        int upstreamOps = 0;
+        if (!pair.backendDone && pair.toClient.hasRemaining()) {
+            upstreamOps |= SelectionKey.OP_READ;
+        }
+        if (pair.toBackend.position() > 0) {
+            upstreamOps |= SelectionKey.OP_WRITE;
+        }
+        // each change is a system call, and most events leave the interest as it was
+        if (pair.clientKey.interestOps() != clientOps) {
+            pair.clientKey.interestOps(clientOps);
+        }
+        if (pair.upstreamKey.interestOps() != upstreamOps) {
+            pair.upstreamKey.interestOps(upstreamOps);
+        }
+    }
+
+    private void close(Pair pair) {
+        if (!pairs.remove(pair)) {
+            return;
+        }
+        if (pair.backend != null) {
+            pair.backend.active.decrementAndGet();
+        }
+        closeQuietly(pair.client);
+        closeQuietly(pair.upstream);
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        }
+        catch (IOException e) {
+            // nothing left to clean up
+        }
+    }
+
+    private static String describe(SocketChannel channel) {
+        try {
+            return String.valueOf(channel.getRemoteAddress());
+        }
+        catch (IOException e) {
+            return "a client";
+        }
+    }
+
+    //***************************************************************
+    //
+    //  Method:       checkHealth
+    //
+    //  Description:  The health thread. Pings every backend once per
+    //                interval on a fresh connection and takes it out of
+    //                rotation or puts it back.
+    //
+    //  Parameters:   None
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    private void checkHealth() {
+        while (!stopping) {
+            for (Backend backend : backends) {
+                try {
+                    ping(backend);
+                    backend.failures = 0;
+                    backend.markUp(log);
+                }
+                catch (IOException e) {
+                    if (++backend.failures >= healthFailures) {
+                        backend.markDown(log, "failed " + backend.failures + " health check(s): " + e.getMessage());
+                    }
+                }
+            }
+            try {
+                Thread.sleep(healthIntervalMillis);
+            }
+            catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void ping(Backend backend) throws IOException {
+        try (Socket socket = new Socket()) {
+            socket.connect(backend.address, healthTimeoutMillis);
+            socket.setSoTimeout(healthTimeoutMillis);
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+
+            out.writeUTF(RequestProcessor.PING);
+            if (!in.readUTF().equals(RequestProcessor.PONG)) {
+                throw new IOException("it didn't answer Ping with Pong");
+            }
+            out.writeUTF(RequestProcessor.BYE);
+        }
+    }
+
+    //******************************************************************************
+    //
+    //  Class:         Backend
+    //
+    //  Description:   One server behind the proxy and how it's doing
+    //
+    //******************************************************************************
+    private static final class Backend
+    {
+        private final InetSocketAddress address;
+        // connections going through the proxy to it right now
+        private final AtomicInteger active = new AtomicInteger();
+        private volatile boolean healthy = true;
+        // health checks missed in a row; only the health thread uses it
+        private int failures;
+
+        private Backend(String host, int port) {
+            this.address = new InetSocketAddress(host, port);
+        }
+
+        private synchronized void markDown(ServerLog log, String reason) {
+            if (healthy) {
+                healthy = false;
+                log.warn("Backend " + address + " " + reason + ". Draining its "
+                        + active.get() + " connection(s) and sending it no new ones.");
+            }
+        }
+
+        private synchronized void markUp(ServerLog log) {
+            if (!healthy) {
+                healthy = true;
+                log.info("Backend " + address + " is healthy again.");
+            }
+        }
+    }
+
+    //******************************************************************************
+    //
+    //  Class:         Pair
+    //
+    //  Description:   A client connection and the backend connection it is
+    //                 joined to, with a buffer for each direction. Only the
+    //                 loop thread touches it.
+    //
+    //******************************************************************************
+    private static final class Pair
+    {
+        private final SocketChannel client;
+        private SelectionKey clientKey;
+        private SocketChannel upstream;
+        private SelectionKey upstreamKey;
+        private Backend backend;
+        private final Set<Backend> tried = new HashSet<>();
+        private boolean connected;
+
+        // both in write mode: bytes read and not yet passed on sit before position
+        private final ByteBuffer toBackend = ByteBuffer.allocateDirect(BUFFER_BYTES);
+        private final ByteBuffer toClient = ByteBuffer.allocateDirect(BUFFER_BYTES);
+
+        // a side has hung up, and the hang up has been passed to the other side
+        private boolean clientDone;
+        private boolean backendDone;
+        private boolean backendShut;
+        private boolean clientShut;
+
+        private Pair(SocketChannel client) {
+            this.client = client;
+        }
+    }
+}
\ No newline at end of file
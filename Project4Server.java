@@ -12,10 +12,13 @@
 //
 //  Instructor:    Fred Kumi
 //
-//  Description:   Opens a socket and waits for client connection. Once connected,
-//                 valid data sent from the client is processed and sent back
-//                 to the client. If the client disconnects the server stays open
-//                 and waits for connection.
+//  Description:   Opens a socket and waits for client connections. Each client
+//                 gets its own session, so valid data sent from any number of
+//                 clients is processed and sent back at the same time. If a
+//                 client disconnects the server stays open for the others.
+//                 Stopping the server (Ctrl+C, a SIGTERM, or "shutdown" on the
+//                 admin port) stops accepting, lets every client finish the
+//                 request it is in the middle of, and then closes them.
 //
 //  Notes:         I'm going to be calling a generic IOException quite frequently.
 //                 This isn't exactly by choice, but what I see as a necessary evil
@@ -26,24 +29,58 @@
 //
 //******************************************************************************
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
-import java.util.ArrayList;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class Project4Server
 {
-    private DataInputStream inStream = null;
-    private DataOutputStream outStream = null;
-    private Socket connection = null;
-    private ServerSocket server = null;
+    // enough to keep a few hundred clients busy at once; every blocking session
+    // holds a thread while it waits on readUTF
+    private static final int DEFAULT_MAX_SESSIONS = 256;
+    // the default backlog of 50 drops connections when hundreds of clients show up at once
+    private static final int ACCEPT_BACKLOG = 1024;
+    // how long accepting pauses after a client couldn't be accepted
+    private static final int ACCEPT_RETRY_MILLIS = 50;
+    // how long clients get to finish their requests once the server is stopping
+    private static final int DEFAULT_DRAIN_SECONDS = 10;
+
+    public static final int DEFAULT_PORT = 4301;
+
+    public static final String ENGINE_BLOCKING = "blocking";
+    public static final String ENGINE_NIO = "nio";
 
-    private int number1;
-    private int number2;
-    private int number3;
-    private final ArrayList<Integer> numbers;
+    private final String engine;
+    private final int loopCount;
+    private final ServerContext context;
+    private final ServerLog log;
+    private final long drainNanos;
+
+    // the blocking engine's live sessions, so a shutdown can drain them
+    private final Set<Project4Session> sessions = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean shuttingDown = new AtomicBoolean();
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private volatile boolean failed;
+
+    private ServerSocket server = null;
+    private ExecutorService sessionPool = null;
+    private NioServerEngine nioEngine = null;
+    private UdpServerEngine udpEngine = null;
 
     //***************************************************************
     //
@@ -51,19 +88,48 @@ public class Project4Server
     //
     //  Description:  Defines variables for use in the program
     //
-    //  Parameters:   int port
+    //  Parameters:   int port, CommandLineOptions options
     //
     //  Returns:      N/A
     //
     //**************************************************************
-    public Project4Server(int port) {
-        this.number1 = 0;
-        this.number2 = 0;
-        this.number3 = 0;
+    public Project4Server(int port, CommandLineOptions options) {
+        this.engine = options.getString("engine", ENGINE_BLOCKING);
+        this.loopCount = options.getInt("loops", Runtime.getRuntime().availableProcessors());
+        this.drainNanos = TimeUnit.SECONDS.toNanos(options.getInt("drain-seconds", DEFAULT_DRAIN_SECONDS));
 
-        numbers = new ArrayList<>();
+        this.context = new ServerContext(options);
+        this.log = context.getLog();
+
+        context.getMetrics().register();
+        startMetricsEndpoint(options.getInt("metrics-port", 0));
+        if (context.getCache() != null) {
+            startCacheReport(options.getInt("cache-report", 0));
+        }
+
+        if (engine.equals(ENGINE_BLOCKING)) {
+            int maxSessions = options.getInt("sessions", DEFAULT_MAX_SESSIONS);
+            int queueLimit = options.getInt("session-queue", 0);
+            AtomicInteger sessionCount = new AtomicInteger();
+
+            // a fixed pool keeps the number of session threads bounded; clients past
+            // the limit wait in the queue until a running session finishes, and with
+            // --session-queue clients past that are told the server is busy
+            sessionPool = new ThreadPoolExecutor(maxSessions, maxSessions, 0L, TimeUnit.MILLISECONDS,
+                    queueLimit > 0 ? new LinkedBlockingQueue<>(queueLimit) : new LinkedBlockingQueue<>(), task -> {
+                        Thread thread = new Thread(task, "session-" + sessionCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+        }
+        else if (!engine.equals(ENGINE_NIO)) {
+            throw new IllegalArgumentException("Unknown engine: " + engine + " (expected blocking or nio)");
+        }
 
         startServer(port);
+        // off unless asked for; --udp alone uses the port UdpClient expects by default
+        startUdpEngine(options.getInt("udp-port", options.getBoolean("udp", false) ? UdpServerEngine.DEFAULT_PORT : 0));
+        startAdminEndpoint(options.getInt("admin-port", 0));
     }
 
     //***************************************************************
@@ -78,11 +144,20 @@ public class Project4Server
     //
     //**************************************************************
     public static void main(String[] argv) {
-        Project4Server server = new Project4Server(4301);
+        CommandLineOptions options = new CommandLineOptions(argv);
+        // --port lets several servers run on one host, e.g. behind Project4Proxy
+        Project4Server server = new Project4Server(options.getInt("port", DEFAULT_PORT), options);
 
         server.developerInfo();
 
+        // Ctrl+C and SIGTERM drain the clients instead of dropping them
+        Runtime.getRuntime().addShutdownHook(new Thread(server::shutdown, "shutdown"));
         server.acceptConnection();
+        server.awaitShutdown();
+
+        if (server.failed) {
+            System.exit(-1);
+        }
     }
 
     //***************************************************************
@@ -97,292 +172,460 @@ public class Project4Server
     //
     //**************************************************************
     public void startServer(int port) {
-        System.out.println("Attempting to start the server...");
+        log.info("Attempting to start the server...");
         try {
-            server = new ServerSocket(port);
+            if (engine.equals(ENGINE_NIO)) {
+                nioEngine = new NioServerEngine(port, loopCount, ACCEPT_BACKLOG, context);
+            }
+            else {
+                server = new ServerSocket(port, ACCEPT_BACKLOG);
+            }
         }
         catch (IOException e) {
-            System.err.println("Unable to start server. Printing stack trace and terminating...");
-            e.printStackTrace();
+            log.error("Unable to start server. Terminating...", e);
             closeServer();
         }
-        System.out.println("Server started.");
+        log.info("Server started using the " + engine + " engine.");
     }
 
     //***************************************************************
     //
-    //  Method:       acceptConnection
+    //  Method:       startUdpEngine
     //
-    //  Description:  Attempts to open the server to connections
+    //  Description:  Answers single requests sent as datagrams on the
+    //                given port, next to the TCP engine. Does nothing
+    //                unless port is positive.
     //
-    //  Parameters:   None
+    //  Parameters:   int port
     //
     //  Returns:      N/A
     //
     //**************************************************************
-    public void acceptConnection() {
-        System.out.println("Waiting for a client to connect...");
+    public void startUdpEngine(int port) {
+        if (port <= 0) {
+            return;
+        }
         try {
-            connection = server.accept();
-            inStream = new DataInputStream(connection.getInputStream());
-            outStream = new DataOutputStream(connection.getOutputStream());
-            System.out.println("Connected to client.");
-            receiveInput();
+            udpEngine = new UdpServerEngine(port, context);
         }
         catch (IOException e) {
-            System.err.println("Unknown error occurred. Printing stack trace and terminating...");
-            e.printStackTrace();
-            closeServer();
+            log.warn("Unable to open the UDP port " + port + ": " + e.getMessage());
+            return;
         }
+        Thread thread = new Thread(udpEngine, "udp-server");
+        thread.setDaemon(true);
+        thread.start();
+        log.info("Answering datagrams on UDP port " + port + ".");
     }
 
     //***************************************************************
     //
-    //  Method:       checkConnection
+    //  Method:       startCacheReport
     //
-    //  Description:  Checks to see if a client is still connected
+    //  Description:  Prints the cache's hit, miss and eviction counts
+    //                every few seconds so its size can be tuned. Does
+    //                nothing unless seconds is positive.
     //
-    //  Parameters:   None
+    //  Parameters:   int seconds
     //
     //  Returns:      N/A
     //
     //**************************************************************
-    public void checkConnection() {
-        try {
-            if (connection.getInetAddress().isReachable(1000)) {
-                System.out.println("Lost connection to the client. Waiting for reconnection...");
-                acceptConnection();
+    public void startCacheReport(int seconds) {
+        if (seconds <= 0) {
+            return;
+        }
+        Thread reporter = new Thread(() -> {
+            try {
+                while (true) {
+                    Thread.sleep(seconds * 1000L);
+                    log.info(context.getCache().toString());
+                }
             }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "cache-report");
+        reporter.setDaemon(true);
+        reporter.start();
+    }
+
+    //***************************************************************
+    //
+    //  Method:       startMetricsEndpoint
+    //
+    //  Description:  Listens on a loopback port and answers every
+    //                connection with the metrics report as plain text,
+    //                so "nc 127.0.0.1 port" shows it. Does nothing
+    //                unless port is positive.
+    //
+    //  Parameters:   int port
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    public void startMetricsEndpoint(int port) {
+        if (port <= 0) {
+            return;
+        }
+        ServerSocket endpoint;
+        try {
+            endpoint = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
         }
         catch (IOException e) {
-            System.err.println("Unknown error occurred. Printing stack trace and closing the server...");
-            e.printStackTrace();
-            closeServer();
+            log.warn("Unable to open the metrics port " + port + ": " + e.getMessage());
+            return;
         }
+        Thread thread = new Thread(() -> {
+            while (true) {
+                try (Socket reader = endpoint.accept()) {
+                    OutputStream out = reader.getOutputStream();
+                    out.write(context.getMetrics().getReport().getBytes(StandardCharsets.UTF_8));
+                    out.flush();
+                }
+                catch (IOException e) {
+                    log.warn("Failed to send the metrics report: " + e.getMessage());
+                }
+            }
+        }, "metrics-endpoint");
+        thread.setDaemon(true);
+        thread.start();
+        log.info("Metrics are available on 127.0.0.1:" + port + ".");
     }
 
     //***************************************************************
     //
-    //  Method:       receiveInput
+    //  Method:       startAdminEndpoint
     //
-    //  Description:  Accepts input from the client
+    //  Description:  Listens on a loopback port for one line commands:
+    //                "shutdown" stops the server the same way Ctrl+C
+    //                does. Does nothing unless port is positive.
     //
-    //  Parameters:   None
+    //  Parameters:   int port
     //
     //  Returns:      N/A
     //
     //**************************************************************
-    public void receiveInput() {
-        String str;
-        // I consider this to be a coding crime but I'm honestly not sure how else to
-        // keep the server running at all times. The assignment doesn't specify anything
-        // that says the server needs to have functionality to close the server gracefully
-        // so I didn't include any
-        while (true) {
-            try {
-                str = inStream.readUTF();
-                // basic output so anybody viewing the server console (me) knows what is being sent
-                System.out.println("The string sent from the client is: " + str);
-                // if the provided string was successfully parsed, go ahead and process
-                if (parseInput(str)) {
-                    processInput();
+    public void startAdminEndpoint(int port) {
+        if (port <= 0) {
+            return;
+        }
+        ServerSocket endpoint;
+        try {
+            endpoint = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        }
+        catch (IOException e) {
+            log.warn("Unable to open the admin port " + port + ": " + e.getMessage());
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            while (!shuttingDown.get()) {
+                try (Socket admin = endpoint.accept()) {
+                    BufferedReader in = new BufferedReader(new InputStreamReader(admin.getInputStream(), StandardCharsets.UTF_8));
+                    OutputStream out = admin.getOutputStream();
+                    String command = in.readLine();
+
+                    if (command != null && command.trim().equalsIgnoreCase("shutdown")) {
+                        out.write("Shutting down.\n".getBytes(StandardCharsets.UTF_8));
+                        out.flush();
+                        // the drain can take a while; answer the admin first
+                        Thread stopper = new Thread(this::shutdown, "shutdown");
+                        stopper.start();
+                    }
+                    else {
+                        out.write(("Unknown command: " + command + "\n").getBytes(StandardCharsets.UTF_8));
+                        out.flush();
+                    }
+                }
+                catch (IOException e) {
+                    log.warn("Failed to handle an admin command: " + e.getMessage());
                 }
             }
-            // For handling errors
-            catch(IOException io) {
-                System.err.println("Failed to receive input from client. Checking connection...");
-                checkConnection();
+            try {
+                endpoint.close();
             }
-        }
+            catch (IOException e) {
+                log.warn("Failed to close the admin port.");
+            }
+        }, "admin-endpoint");
+        thread.setDaemon(true);
+        thread.start();
+        log.info("Admin commands are accepted on 127.0.0.1:" + port + ".");
     }
 
     //***************************************************************
     //
-    //  Method:       parseInput
+    //  Method:       acceptConnection
     //
-    //  Description:  Attempts to split the client provided string
-    //                into three separate integers
+    //  Description:  Accepts clients for as long as the server is up and
+    //                hands each one off to its own session, or to the
+    //                NIO engine's event loops. A client that can't be
+    //                accepted or started is logged and skipped; only the
+    //                listening socket failing stops the server.
     //
-    //  Parameters:   String line
+    //  Parameters:   None
     //
-    //  Returns:      boolean success
+    //  Returns:      N/A
     //
     //**************************************************************
-    public boolean parseInput(String line) {
-        boolean success = false;
-        String[] tokens;
-
-        if (line.matches("Bye")) {
-            kickClient();
-        }
-        else {
-            // regex that splits a string by any number of spaces to account for extra spacebar presses
-            tokens = line.split("\\s+");
-
-            if (tokens.length != 3) {
-                sendToClient("Invalid number of digits. Please provide exactly three numbers.");
+    public void acceptConnection() {
+        log.info("Waiting for clients to connect...");
+        try {
+            if (nioEngine != null) {
+                nioEngine.run();
             }
-            else {
+            while (server != null) {
+                Socket connection;
+                try {
+                    connection = server.accept();
+                }
+                catch (IOException e) {
+                    if (server.isClosed()) {
+                        throw e;
+                    }
+                    // out of file descriptors, or a client that gave up before it was taken;
+                    // the listening socket is fine, so keep going after a pause instead of spinning
+                    log.warn("Failed to accept a client: " + e.getMessage());
+                    pauseAccepting();
+                    continue;
+                }
                 try {
-                    // I did three separate int variables instead of an array because it's
-                    // easier to work with. I also directly referenced the indexes in the string
-                    // array because all the other checks should prevent anything else before this
-                    number1 = Integer.parseInt(tokens[0]);
-                    number2 = Integer.parseInt(tokens[1]);
-                    number3 = Integer.parseInt(tokens[2]);
-                    success = true;
+                    startSession(connection);
                 }
-                catch (NumberFormatException e) {
-                    sendToClient("One or more supplied values is not a number. Please supply three numbers, \nseparated by spaces.");
+                catch (IOException e) {
+                    log.warn("Failed to start a session for a client: " + e.getMessage());
+                    try {
+                        connection.close();
+                    }
+                    catch (IOException ignored) {
+                        // nothing more can be done for this client
+                    }
                 }
             }
         }
-        return success;
+        catch (IOException e) {
+            // closing the socket is how a shutdown stops accept
+            if (shuttingDown.get()) {
+                return;
+            }
+            log.error("Unknown error occurred. Shutting down...", e);
+            failed = true;
+            shutdown();
+        }
     }
 
     //***************************************************************
     //
-    //  Method:       processInput
+    //  Method:       pauseAccepting
     //
-    //  Description:  Takes the parsed integers and attempts to build
-    //                an ArrayList of integers
+    //  Description:  Waits a moment after a failed accept, so running
+    //                out of file descriptors doesn't turn the accept
+    //                loop into a busy loop filling the log
     //
     //  Parameters:   None
     //
     //  Returns:      N/A
     //
     //**************************************************************
-    public void processInput() {
-        if (number1 <= 0 || number2 <= 0 || number3 <= 0) {
-            sendToClient("All numbers provided must be greater than zero.");
+    private void pauseAccepting() {
+        try {
+            Thread.sleep(ACCEPT_RETRY_MILLIS);
         }
-        else if (number1 >= number2) {
-            sendToClient("The first number must be less than the second.");
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
-        else if (number3 != 1 && number3 != 2) {
-            sendToClient("The third number must be either 1 or 2.");
+    }
+
+    //***************************************************************
+    //
+    //  Method:       startSession
+    //
+    //  Description:  Hands a new client to the session pool and keeps
+    //                track of it until its session ends
+    //
+    //  Parameters:   Socket connection
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    private void startSession(Socket connection) throws IOException {
+        Project4Session session = new Project4Session(connection, context);
+        sessions.add(session);
+        try {
+            sessionPool.execute(() -> {
+                try {
+                    session.run();
+                }
+                finally {
+                    sessions.remove(session);
+                }
+            });
         }
-        else {
-            // ensures the arraylist is clear after each client message
-            numbers.clear();
-            for (int i = number1; i < number2-number3; i+=2) {
-                numbers.add(i + number3);
+        catch (RejectedExecutionException e) {
+            sessions.remove(session);
+            if (!shuttingDown.get()) {
+                // the session queue is full; a busy reply lets the client retry instead of waiting
+                byte[] reply = new byte[Utf8Frames.MAX_FRAME_BYTES];
+                try {
+                    connection.getOutputStream().write(reply, 0, RequestProcessor.errorReply(RequestStatus.BUSY, reply));
+                }
+                catch (IOException ignored) {
+                    // it's being closed either way; this mustn't stop the accept loop
+                }
+                context.getMetrics().recordStatus(RequestStatus.BUSY);
             }
-            // once arraylist of numbers is generated, go to calculate output
-            calculateOutput();
+            // otherwise it was accepted just as the pool was shut down
+            connection.close();
+            return;
+        }
+        // a shutdown that started after accept returned has already gone past it
+        if (shuttingDown.get()) {
+            session.drain();
         }
     }
 
     //***************************************************************
     //
-    //  Method:       calculateOutput
+    //  Method:       shutdown
     //
-    //  Description:  Calculates the sum, mean, and standard dev of the
-    //                generated arraylist of integers based on client
-    //                input
+    //  Description:  Stops accepting clients, gives the connected ones
+    //                until the drain deadline to finish the requests
+    //                they have started, then closes whatever is left.
+    //                Calling it again, or from another thread, waits
+    //                for the first call to finish.
     //
     //  Parameters:   None
     //
     //  Returns:      N/A
     //
     //**************************************************************
-    public void calculateOutput() {
-        double sum = 0.0;
-        double mean = 0.0;
-        double stddev = 0.0;
-
-        for (Integer number : numbers) {
-            sum += number;
+    public void shutdown() {
+        if (!shuttingDown.compareAndSet(false, true)) {
+            awaitShutdown();
+            return;
         }
-        if (sum != 0) {
-            mean = sum / numbers.size();
+        log.info("Shutting down. Waiting up to " + TimeUnit.NANOSECONDS.toSeconds(drainNanos)
+                + " seconds for clients to finish...");
+        try {
+            // a datagram is answered as soon as it arrives, so there is nothing to drain
+            if (udpEngine != null) {
+                udpEngine.close();
+            }
+            if (nioEngine != null) {
+                nioEngine.shutdown(drainNanos);
+            }
+            else if (server != null) {
+                drainSessions();
+            }
+            log.info("Server stopped.");
         }
-
-        for (Integer number : numbers) {
-            stddev += Math.pow(number - mean, 2);
+        catch (IOException e) {
+            log.error("Failed to gracefully close the server.", e);
         }
-
-        if (stddev != 0) {
-            stddev = Math.sqrt(stddev / numbers.size());
+        finally {
+            if (context.getJournal() != null) {
+                context.getJournal().close();
+                log.info("Journaled " + context.getJournal().getWritten() + " request(s), dropped "
+                        + context.getJournal().getDropped() + ".");
+            }
+            // everything logged during the drain gets written before main returns
+            log.close();
+            stopped.countDown();
         }
-        // it is my understanding that all formatting should be left to the client, but the assignment doesn't specify
-        // any special formatting for the output so I'm doing it in the server.
-        sendToClient(String.format("%s%.0f%n%s%.3f%n%s%.3f",  "Sum: ", sum, "Mean: ", mean, "Standard deviation: ", stddev));
     }
 
     //***************************************************************
     //
-    //  Method:       closeServer
+    //  Method:       drainSessions
     //
-    //  Description:  Attempts to close the server
+    //  Description:  The blocking engine's half of shutdown. Every
+    //                session stops reading once it has answered what it
+    //                already has; the ones still going at the deadline
+    //                have their sockets closed out from under them.
     //
     //  Parameters:   None
     //
     //  Returns:      N/A
     //
     //**************************************************************
-    public void closeServer() {
-        // This is my attempt to make sure everything is tidily cleaned up
-        // instead of just quitting, but this should not be executed under
-        // normal circumstances
+    private void drainSessions() throws IOException {
+        server.close();
+        // sessions still waiting in the queue run, see the drain, and leave right away
+        sessionPool.shutdown();
+        for (Project4Session session : sessions) {
+            session.drain();
+        }
+
         try {
-            connection.close();
-            inStream.close();
-            outStream.close();
-            System.exit(-1);
+            if (!sessionPool.awaitTermination(drainNanos, TimeUnit.NANOSECONDS)) {
+                log.info("Drain deadline passed; closing " + sessions.size() + " remaining client(s).");
+                for (Project4Session session : sessions) {
+                    session.forceClose();
+                }
+                sessionPool.shutdownNow();
+            }
         }
-        // In the event that everything fails to close, terminates the program anyway
-        catch (IOException | NullPointerException e) {
-            System.err.println("Failed to gracefully close the server. Terminating...");
-            System.exit(-1);
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 
     //***************************************************************
     //
-    //  Method:       kickClient
+    //  Method:       awaitShutdown
     //
-    //  Description:  Kicks the client off the server
+    //  Description:  Waits until a shutdown has finished
     //
     //  Parameters:   None
     //
     //  Returns:      N/A
     //
     //**************************************************************
-    public void kickClient() {
-        // similar to closeClient but after closing the server it opens the server
-        // for connection again
+    public void awaitShutdown() {
         try {
-            connection.close();
-            inStream.close();
-            outStream.close();
-            acceptConnection();
+            stopped.await();
         }
-        catch (IOException | NullPointerException e) {
-            System.err.println("Failed to gracefully close the server. Terminating...");
-            System.exit(-1);
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 
     //***************************************************************
     //
-    //  Method:       sendToClient
+    //  Method:       closeServer
     //
-    //  Description:  Attempts to send strings to client for display
+    //  Description:  Closes everything immediately and exits. Only for
+    //                when the server can't start; a running server is
+    //                stopped with shutdown.
     //
-    //  Parameters:   String strToSend
+    //  Parameters:   None
     //
     //  Returns:      N/A
     //
     //**************************************************************
-    public void sendToClient(String strToSend) {
+    public void closeServer() {
+        // This is my attempt to make sure everything is tidily cleaned up
+        // instead of just quitting, but this should not be executed under
+        // normal circumstances
         try {
-            outStream.writeUTF(strToSend);
+            if (udpEngine != null) {
+                udpEngine.close();
+            }
+            if (nioEngine != null) {
+                nioEngine.close();
+            }
+            else {
+                sessionPool.shutdownNow();
+                server.close();
+            }
         }
-        catch (IOException e) {
-            System.out.println("Failed to send message to client. Displaying on the server...");
-            System.out.println(strToSend);
+        // In the event that everything fails to close, terminates the program anyway
+        catch (IOException | NullPointerException e) {
+            log.warn("Failed to gracefully close the server. Terminating...");
         }
+        // the log is written by a daemon thread, so let it finish first
+        log.close();
+        System.exit(-1);
     }
 
     //***************************************************************
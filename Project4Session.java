@@ -0,0 +1,550 @@
+//******************************************************************************
+//
+//  Developer:     Cory Munselle
+//
+//  Project #:     Project 4
+//
+//  File Name:     Project4Session.java
+//
+//  Course:        COSC 4301 - Modern Programming
+//
+//  Due Date:      3/11/2022
+//
+//  Instructor:    Fred Kumi
+//
+//  Description:   Handles a single connected client on the blocking engine.
+//                 Each session owns its own socket, streams and request
+//                 processor so several clients can be served at the same time
+//                 without stepping on each other.
+//
+//******************************************************************************
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+public class Project4Session implements Runnable
+{
+    private static final int STREAM_BUFFER_BYTES = 64 * 1024;
+    // how often a session waiting for a request checks whether the server is draining
+    private static final int DRAIN_POLL_MILLIS = 200;
+
+    private DataInputStream inStream = null;
+    private DataOutputStream outStream = null;
+    private final Socket connection;
+
+    private final RequestProcessor processor;
+    private final ServerContext context;
+    private final ServerMetrics metrics;
+    private final ServerLog log;
+    private final RequestJournal journal;
+    private final byte[] frame = new byte[Utf8Frames.MAX_BODY_BYTES];
+    private final char[] decoded = new char[Utf8Frames.MAX_BODY_BYTES];
+    private final byte[] reply = new byte[Utf8Frames.MAX_FRAME_BYTES];
+
+    private final RateLimiter limiter;
+    private final AdmissionControl admission;
+    private final int idleTimeoutMillis;
+    private final int readTimeoutMillis;
+    private final int maxFrameBytes;
+    // the socket timeout currently set, so it's only changed when it has to be
+    private int timeoutMillis;
+    // true from the first byte of a request until the last one has arrived
+    private boolean midRequest;
+
+    private boolean open;
+    private volatile boolean draining;
+
+    //***************************************************************
+    //
+    //  Method:       Constructor
+    //
+    //  Description:  Defines variables for use in the session
+    //
+    //  Parameters:   Socket connection, ServerContext context
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    public Project4Session(Socket connection, ServerContext context) {
+        this.connection = connection;
+        this.processor = context.newProcessor(false);
+        this.context = context;
+        this.metrics = context.getMetrics();
+        this.log = context.getLog();
+        this.journal = context.getJournal();
+        this.limiter = context.newRateLimiter();
+        this.admission = context.getAdmission();
+        this.idleTimeoutMillis = context.getIdleTimeoutMillis();
+        this.readTimeoutMillis = context.getReadTimeoutMillis();
+        this.maxFrameBytes = context.getMaxFrameBytes();
+    }
+
+    //***************************************************************
+    //
+    //  Method:       run
+    //
+    //  Description:  Opens the streams for the connection and serves
+    //                the client until it leaves
+    //
+    //  Parameters:   None
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    @Override
+    public void run() {
+        try {
+            // every reply is one small frame, so don't let Nagle hold it back
+            connection.setTcpNoDelay(true);
+            // buffered both ways so a client that pipelines requests gets its whole
+            // backlog read in one go and all of the replies written back together
+            inStream = new DataInputStream(new BufferedInputStream(connection.getInputStream(), STREAM_BUFFER_BYTES));
+            outStream = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream(), STREAM_BUFFER_BYTES));
+            open = true;
+            metrics.connectionOpened();
+            log.info("Connected to client " + connection.getRemoteSocketAddress() + ".");
+            try {
+                receiveInput();
+            }
+            finally {
+                metrics.connectionClosed();
+            }
+        }
+        catch (IOException e) {
+            log.error("Unable to open streams for the client.", e);
+        }
+        finally {
+            closeSession();
+        }
+    }
+
+    //***************************************************************
+    //
+    //  Method:       receiveInput
+    //
+    //  Description:  Accepts input from the client until it says Bye
+    //                or the connection drops
+    //
+    //  Parameters:   None
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    public void receiveInput() {
+        int length;
+
+        while (open) {
+            try {
+                if (!awaitRequest()) {
+                    log.info("Closed the idle client " + connection.getRemoteSocketAddress() + " for shutdown.");
+                    open = false;
+                    continue;
+                }
+                long receivedAt = System.nanoTime();
+                midRequest = true;
+                // same framing as readUTF, but the body stays as bytes in a reused array
+                awaitBytes(Utf8Frames.HEADER_BYTES, readTimeoutMillis);
+                length = inStream.readUnsignedShort();
+                if (length > maxFrameBytes) {
+                    // reading it would be exactly what the limit is there to prevent
+                    log.info("Client " + connection.getRemoteSocketAddress() + " sent a " + length
+                            + " byte request; the limit is " + maxFrameBytes + ". Closing the session...");
+                    outStream.write(reply, 0, RequestProcessor.errorReply(RequestStatus.TOO_LARGE, reply));
+                    metrics.recordStatus(RequestStatus.TOO_LARGE);
+                    open = false;
+                    continue;
+                }
+                // the wait for the header is the client thinking; the read starts once it's here
+                long readStart = System.nanoTime();
+                awaitBytes(length, readTimeoutMillis);
+                inStream.readFully(frame, 0, length);
+                midRequest = false;
+                metrics.recordRead(System.nanoTime() - readStart);
+                metrics.addBytesIn(Utf8Frames.HEADER_BYTES + length);
+
+                if (context.shouldEcho()) {
+                    // basic output so anybody viewing the server console (me) knows what is being sent
+                    log.info("The string sent from the client is: " + Utf8Frames.decode(frame, 0, length, decoded));
+                }
+                if (RequestProcessor.isBye(frame, 0, length)) {
+                    kickClient();
+                }
+                else if (BinaryProtocol.isHello(frame, 0, length)) {
+                    // the client wants the binary protocol; it stays binary until it leaves
+                    sendToClient(BinaryProtocol.ACCEPTED);
+                    flushToClient();
+                    receiveBinaryInput();
+                }
+                else if (RequestProcessor.isPing(frame, 0, length)) {
+                    sendToClient(RequestProcessor.PONG);
+                    if (inStream.available() == 0) {
+                        flushToClient();
+                        caughtUp();
+                    }
+                }
+                else {
+                    boolean admitted = false;
+                    try {
+                        int replyLength;
+                        if (limiter != null && !limiter.tryAcquire()) {
+                            replyLength = RequestProcessor.errorReply(RequestStatus.RATE_LIMITED, reply);
+                            metrics.recordStatus(RequestStatus.RATE_LIMITED);
+                        }
+                        else if (admission != null
+                                && !(admitted = admission.tryAcquire(receivedAt, processor.estimateCount(frame, 0, length)))) {
+                            replyLength = RequestProcessor.errorReply(RequestStatus.BUSY, reply);
+                            metrics.recordStatus(RequestStatus.BUSY);
+                        }
+                        else {
+                            // the reply comes back already framed, possibly straight from the cache
+                            replyLength = processor.respond(frame, 0, length, reply);
+                        }
+                        long writeStart = System.nanoTime();
+                        outStream.write(reply, 0, replyLength);
+                        // only go to the socket once every frame already received has been answered
+                        if (inStream.available() == 0) {
+                            flushToClient();
+                            caughtUp();
+                        }
+                        metrics.recordWrite(System.nanoTime() - writeStart);
+                        metrics.addBytesOut(replyLength);
+                    }
+                    finally {
+                        // a client that hangs up mid reply mustn't keep its place under the limit
+                        if (admitted) {
+                            admission.release(receivedAt);
+                        }
+                    }
+                }
+            }
+            // the client hung up without saying Bye
+            catch (EOFException eof) {
+                log.info("Lost connection to the client " + connection.getRemoteSocketAddress() + ".");
+                open = false;
+            }
+            // a limit on how long the client can keep the session waiting ran out
+            catch (SocketTimeoutException timeout) {
+                if (midRequest) {
+                    log.info("Client " + connection.getRemoteSocketAddress() + " took too long to send a request. Closing the session...");
+                }
+                else {
+                    log.info("Client " + connection.getRemoteSocketAddress() + " was idle for too long. Closing the session...");
+                }
+                open = false;
+            }
+            // For handling errors
+            catch (IOException io) {
+                log.warn("Failed to receive input from client. Closing the session...");
+                open = false;
+            }
+        }
+    }
+
+    //***************************************************************
+    //
+    //  Method:       receiveBinaryInput
+    //
+    //  Description:  Answers fixed width binary requests until the client
+    //                says Bye or the connection drops
+    //
+    //  Parameters:   None
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    public void receiveBinaryInput() throws IOException {
+        ByteBuffer response = ByteBuffer.allocate(BinaryProtocol.RESPONSE_BYTES);
+
+        while (open) {
+            if (!awaitRequest()) {
+                log.info("Closed the idle client " + connection.getRemoteSocketAddress() + " for shutdown.");
+                open = false;
+                return;
+            }
+            long receivedAt = System.nanoTime();
+            midRequest = true;
+            byte type = inStream.readByte();
+            awaitBytes(BinaryProtocol.REQUEST_BYTES - 1, readTimeoutMillis);
+            int number1 = inStream.readInt();
+            int number2 = inStream.readInt();
+            int number3 = inStream.readInt();
+            midRequest = false;
+            metrics.addBytesIn(BinaryProtocol.REQUEST_BYTES);
+            if (context.shouldEcho()) {
+                log.info("The numbers sent from the client are: " + number1 + " " + number2 + " " + number3);
+            }
+
+            response.clear();
+            boolean admitted = false;
+            try {
+                if (type == BinaryProtocol.BYE) {
+                    kickClient();
+                }
+                else if (type == BinaryProtocol.PING) {
+                    BinaryProtocol.writeStatus(RequestStatus.OK, response);
+                    outStream.write(response.array(), 0, BinaryProtocol.RESPONSE_BYTES);
+                    metrics.addBytesOut(BinaryProtocol.RESPONSE_BYTES);
+                }
+                else if (type == BinaryProtocol.COMPUTE && limiter != null && !limiter.tryAcquire()) {
+                    BinaryProtocol.writeStatus(RequestStatus.RATE_LIMITED, response);
+                    outStream.write(response.array(), 0, BinaryProtocol.RESPONSE_BYTES);
+                    metrics.recordStatus(RequestStatus.RATE_LIMITED);
+                    metrics.addBytesOut(BinaryProtocol.RESPONSE_BYTES);
+                }
+                else if (type == BinaryProtocol.COMPUTE && admission != null
+                        && !(admitted = admission.tryAcquire(receivedAt, RequestProcessor.estimateCount(number1, number2, number3)))) {
+                    BinaryProtocol.writeStatus(RequestStatus.BUSY, response);
+                    outStream.write(response.array(), 0, BinaryProtocol.RESPONSE_BYTES);
+                    metrics.recordStatus(RequestStatus.BUSY);
+                    metrics.addBytesOut(BinaryProtocol.RESPONSE_BYTES);
+                }
+                else if (type == BinaryProtocol.COMPUTE) {
+                    long computeStart = System.nanoTime();
+                    int status = BinaryProtocol.answer(number1, number2, number3, response);
+                    metrics.recordStatus(status);
+                    metrics.recordCompute(System.nanoTime() - computeStart);
+                    if (journal != null) {
+                        journal.record(number1, number2, number3, status);
+                    }
+                    outStream.write(response.array(), 0, BinaryProtocol.RESPONSE_BYTES);
+                    metrics.addBytesOut(BinaryProtocol.RESPONSE_BYTES);
+                }
+                else {
+                    // nothing after an unknown frame can be trusted to line up
+                    BinaryProtocol.writeStatus(RequestStatus.UNKNOWN_REQUEST, response);
+                    outStream.write(response.array(), 0, BinaryProtocol.RESPONSE_BYTES);
+                    metrics.recordStatus(RequestStatus.UNKNOWN_REQUEST);
+                    metrics.addBytesOut(BinaryProtocol.RESPONSE_BYTES);
+                    kickClient();
+                }
+                if (inStream.available() == 0) {
+                    flushToClient();
+                    caughtUp();
+                }
+            }
+            finally {
+                // a client that hangs up mid reply mustn't keep its place under the limit
+                if (admitted) {
+                    admission.release(receivedAt);
+                }
+            }
+        }
+    }
+
+    //***************************************************************
+    //
+    //  Method:       awaitRequest
+    //
+    //  Description:  Waits for the first byte of the next request
+    //                without taking it off the stream. The wait is cut
+    //                into short socket timeouts so a drain is noticed
+    //                without anything having to close the input, which
+    //                could throw away a request that had already
+    //                started arriving.
+    //
+    //  Parameters:   None
+    //
+    //  Returns:      boolean true if a request has started arriving,
+    //                false if the session is draining and idle
+    //
+    //**************************************************************
+    private boolean awaitRequest() throws IOException {
+        long idleStart = System.nanoTime();
+        int slice = idleTimeoutMillis > 0 ? Math.min(DRAIN_POLL_MILLIS, idleTimeoutMillis) : DRAIN_POLL_MILLIS;
+
+        while (true) {
+            if (draining && inStream.available() == 0) {
+                return false;
+            }
+            awaitBytes(1, slice);
+            inStream.mark(1);
+            try {
+                if (inStream.read() < 0) {
+                    throw new EOFException();
+                }
+                inStream.reset();
+                return true;
+            }
+            catch (SocketTimeoutException timeout) {
+                // nothing was read, so the stream is just as it was
+                if (idleTimeoutMillis > 0
+                        && System.nanoTime() - idleStart >= TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis)) {
+                    throw timeout;
+                }
+            }
+        }
+    }
+
+    //***************************************************************
+    //
+    //  Method:       awaitBytes
+    //
+    //  Description:  Sets the socket timeout for the next read. When
+    //                the bytes are already buffered nothing will block,
+    //                so the timeout is left alone; pipelined clients
+    //                don't pay for a system call on every request.
+    //
+    //  Parameters:   int bytes, int timeout (milliseconds, 0 for none)
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    private void awaitBytes(int bytes, int timeout) throws IOException {
+        if (timeout != timeoutMillis && inStream.available() < bytes) {
+            connection.setSoTimeout(timeout);
+            timeoutMillis = timeout;
+        }
+    }
+
+    //***************************************************************
+    //
+    //  Method:       caughtUp
+    //
+    //  Description:  Called once every request received so far has
+    //                been answered and flushed. A draining session
+    //                stops here instead of waiting for more.
+    //
+    //  Parameters:   None
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    private void caughtUp() {
+        if (draining && open) {
+            log.info("Finished with client " + connection.getRemoteSocketAddress() + " for shutdown.");
+            open = false;
+        }
+    }
+
+    //***************************************************************
+    //
+    //  Method:       drain
+    //
+    //  Description:  Asks the session to finish what it's working on
+    //                and close. Called from the shutdown thread. An
+    //                idle session notices within DRAIN_POLL_MILLIS; the
+    //                input is never shut under it, so a request that
+    //                has started arriving is still read and answered.
+    //
+    //  Parameters:   None
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    public void drain() {
+        draining = true;
+    }
+
+    //***************************************************************
+    //
+    //  Method:       kickClient
+    //
+    //  Description:  Ends the session once the client says Bye
+    //
+    //  Parameters:   None
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    public void kickClient() {
+        log.info("Client " + connection.getRemoteSocketAddress() + " said Bye.");
+        open = false;
+    }
+
+    //***************************************************************
+    //
+    //  Method:       closeSession
+    //
+    //  Description:  Closes the streams and socket for this client.
+    //                The server keeps accepting other clients.
+    //
+    //  Parameters:   None
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    public void closeSession() {
+        open = false;
+        try {
+            if (outStream != null) {
+                flushToClient();
+            }
+            connection.close();
+        }
+        catch (IOException e) {
+            log.warn("Failed to gracefully close the client connection.");
+        }
+    }
+
+    //***************************************************************
+    //
+    //  Method:       forceClose
+    //
+    //  Description:  Closes the socket out from under the session once
+    //                the shutdown deadline has passed. The session's
+    //                own thread sees the failure and finishes.
+    //
+    //  Parameters:   None
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    public void forceClose() {
+        try {
+            connection.close();
+        }
+        catch (IOException e) {
+            log.warn("Failed to close the client connection.");
+        }
+    }
+
+    //***************************************************************
+    //
+    //  Method:       flushToClient
+    //
+    //  Description:  Pushes every buffered reply out to the client
+    //
+    //  Parameters:   None
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    public void flushToClient() {
+        try {
+            outStream.flush();
+        }
+        catch (IOException e) {
+            log.info("Failed to send buffered replies to client.");
+        }
+    }
+
+    //***************************************************************
+    //
+    //  Method:       sendToClient
+    //
+    //  Description:  Queues a string for the client to display. It
+    //                goes out on the next flushToClient.
+    //
+    //  Parameters:   String strToSend
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    public void sendToClient(String strToSend) {
+        try {
+            outStream.writeUTF(strToSend);
+        }
+        catch (IOException e) {
+            log.info("Failed to send message to client. Displaying on the server...");
+            log.info(strToSend);
+        }
+    }
+}
\ No newline at end of file
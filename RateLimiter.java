@@ -0,0 +1,72 @@
+//******************************************************************************
+//
+//  Developer:     Cory Munselle
+//
+//  Project #:     Project 4
+//
+//  File Name:     RateLimiter.java
+//
+//  Course:        COSC 4301 - Modern Programming
+//
+//  Description:   Caps how many requests one connection can make per second
+//                 with a token bucket. The bucket holds a second's worth of
+//                 requests, so a client can burst up to the limit and is then
+//                 held to the steady rate.
+//
+//  Notes:         Not thread safe. Every connection gets its own and only
+//                 the thread serving that connection touches it.
+//
+//******************************************************************************
+
+public final class RateLimiter
+{
+    private final double tokensPerNano;
+    private final double capacity;
+
+    private double tokens;
+    private long refilledAt;
+
+    //***************************************************************
+    //
+    //  Method:       Constructor
+    //
+    //  Description:  Starts with a full bucket
+    //
+    //  Parameters:   int perSecond
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    public RateLimiter(int perSecond) {
+        if (perSecond <= 0) {
+            throw new IllegalArgumentException("A rate limit has to be positive, got " + perSecond);
+        }
+        this.tokensPerNano = perSecond / 1e9;
+        this.capacity = perSecond;
+        this.tokens = capacity;
+        this.refilledAt = System.nanoTime();
+    }
+
+    //***************************************************************
+    //
+    //  Method:       tryAcquire
+    //
+    //  Description:  Takes a token for one request if there is one
+    //
+    //  Parameters:   None
+    //
+    //  Returns:      boolean true if the request is allowed
+    //
+    //**************************************************************
+    public boolean tryAcquire() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - refilledAt) * tokensPerNano);
+        refilledAt = now;
+
+        if (tokens < 1.0) {
+            return false;
+        }
+        tokens -= 1.0;
+        return true;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,416 @@
+//******************************************************************************
+//
+//  Developer:     Cory Munselle
+//
+//  Project #:     Project 4
+//
+//  File Name:     RequestJournal.java
+//
+//  Course:        COSC 4301 - Modern Programming
+//
+//  Due Date:      3/11/2022
+//
+//  Instructor:    Fred Kumi
+//
+//  Description:   An append-only record of every triple the server answered
+//                 and what it answered, for replaying later (JournalReplay) or
+//                 for looking over offline. Connection threads only copy the
+//                 triple and its status into a ring and move on; one
+//                 background thread works out the result again, packs it into
+//                 a fixed size record and writes it into a memory-mapped
+//                 segment file, starting a new segment whenever one fills up.
+//
+//  Notes:         Segments are named journal-00000001.p4j and so on and are
+//                 never written to again once the server moves past them, so
+//                 a restart starts a new one. Each holds a 16 byte header
+//                 (MAGIC, RECORD_BYTES, 8 spare bytes) and then records of
+//                 RECORD_BYTES each:
+//
+//                   0  long    time answered, epoch milliseconds
+//                   8  int     number1, number2, number3
+//                   20 int     status
+//                   24 long    sum
+//                   32 double  mean
+//                   40 double  standard deviation
+//
+//                 The result fields are 0 for a failed status, and so are the
+//                 numbers when the request wasn't three numbers at all. A
+//                 record's time is written last, so the first record with a
+//                 time of 0 is the end of the segment.
+//
+//                 The result is not the bytes that went to the client. It is
+//                 worked out again from the triple with the writer's own
+//                 StatisticsEngine, so a connection thread copies no more
+//                 than four ints. The status is the one that was sent. A
+//                 reply that was wrong when it was sent, such as a stale
+//                 cached frame, is therefore not visible in the journal, and
+//                 JournalReplay checks a server against the journaling
+//                 build's arithmetic rather than against what the client got.
+//
+//                 Like the log, a full ring drops the record and counts it
+//                 rather than making a request wait.
+//
+//                 Options:
+//                   --journal          directory to write segments to (off)
+//                   --journal-bytes    size of each segment (64 MB)
+//                   --journal-buffer   records the ring holds (65536)
+//
+//******************************************************************************
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+public final class RequestJournal implements AutoCloseable
+{
+    public static final int MAGIC = 0x50344A31;
+    public static final int HEADER_BYTES = 16;
+    public static final int RECORD_BYTES = 48;
+    public static final String SEGMENT_PREFIX = "journal-";
+    public static final String SEGMENT_SUFFIX = ".p4j";
+
+    private static final int DEFAULT_SEGMENT_BYTES = 64 * 1024 * 1024;
+    private static final int DEFAULT_BUFFER_RECORDS = 65536;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final File directory;
+    private final int recordsPerSegment;
+    private final ServerLog log;
+
+    // the ring: slot i holds its record in these arrays once published[i] is its sequence + 1
+    private final long[] times;
+    private final int[] numbers1;
+    private final int[] numbers2;
+    private final int[] numbers3;
+    private final int[] statuses;
+    private final AtomicLongArray published;
+    private final int mask;
+    private final AtomicLong claimed = new AtomicLong();
+    // everything before this has been taken by the writer; only it writes this
+    private volatile long consumed;
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder written = new LongAdder();
+
+    private final Thread writer;
+    private volatile boolean sleeping;
+    private volatile boolean closed;
+
+    // only touched by the writer thread
+    private int segmentNumber;
+    private MappedByteBuffer segment;
+
+    //***************************************************************
+    //
+    //  Method:       Constructor
+    //
+    //  Description:  Reads the --journal options, opens the first new
+    //                segment and starts the writer
+    //
+    //  Parameters:   CommandLineOptions options, ServerLog log
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    public RequestJournal(CommandLineOptions options, ServerLog log) {
+        this.directory = new File(options.getString("journal", "."));
+        this.log = log;
+        long segmentBytes = Math.max(HEADER_BYTES + RECORD_BYTES, options.getInt("journal-bytes", DEFAULT_SEGMENT_BYTES));
+        this.recordsPerSegment = (int) ((segmentBytes - HEADER_BYTES) / RECORD_BYTES);
+
+        // rounded up to a power of two so a slot is a mask away
+        int capacity = Integer.highestOneBit(Math.max(2, options.getInt("journal-buffer", DEFAULT_BUFFER_RECORDS) - 1)) << 1;
+        this.times = new long[capacity];
+        this.numbers1 = new int[capacity];
+        this.numbers2 = new int[capacity];
+        this.numbers3 = new int[capacity];
+        this.statuses = new int[capacity];
+        this.published = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IllegalArgumentException("Unable to create the journal directory " + directory);
+        }
+        File[] existing = segments(directory);
+        this.segmentNumber = existing.length == 0 ? 0 : segmentNumber(existing[existing.length - 1]);
+        try {
+            nextSegment();
+        }
+        catch (IOException e) {
+            throw new IllegalArgumentException("Unable to open a journal segment in " + directory + ": " + e.getMessage(), e);
+        }
+
+        writer = new Thread(this::drain, "journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    //***************************************************************
+    //
+    //  Method:       record
+    //
+    //  Description:  Hands one answered request to the writer without
+    //                waiting. The result is worked out again on the
+    //                writer thread, so only the triple is copied here.
+    //
+    //  Parameters:   int number1, int number2, int number3, int status
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    public void record(int number1, int number2, int number3, int status) {
+        if (closed) {
+            dropped.increment();
+            return;
+        }
+        long slot;
+        do {
+            slot = claimed.get();
+            if (slot - consumed > mask) {
+                dropped.increment();
+                return;
+            }
+        }
+        while (!claimed.compareAndSet(slot, slot + 1));
+
+        int index = (int) slot & mask;
+        times[index] = System.currentTimeMillis();
+        numbers1[index] = number1;
+        numbers2[index] = number2;
+        numbers3[index] = number3;
+        statuses[index] = status;
+        // the volatile write publishes the plain ones above it
+        published.set(index, slot + 1);
+
+        if (sleeping) {
+            sleeping = false;
+            LockSupport.unpark(writer);
+        }
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    public long getWritten() {
+        return written.sum();
+    }
+
+    //***************************************************************
+    //
+    //  Method:       close
+    //
+    //  Description:  Writes out every record already handed over,
+    //                flushes the segment to disk and stops the writer
+    //
+    //  Parameters:   None
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    //***************************************************************
+    //
+    //  Method:       drain
+    //
+    //  Description:  The writer thread. Writes every published record
+    //                in order and sleeps when there is nothing to do.
+    //
+    //  Parameters:   None
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    private void drain() {
+        long head = consumed;
+        long reportedDrops = 0;
+
+        while (true) {
+            boolean stopping = closed;
+            int index;
+            while (published.get(index = (int) head & mask) == head + 1) {
+                write(times[index], numbers1[index], numbers2[index], numbers3[index], statuses[index]);
+                head++;
+                consumed = head;
+            }
+
+            long drops = dropped.sum();
+            if (drops != reportedDrops) {
+                log.warn((drops - reportedDrops) + " journal record(s) dropped, the buffer was full");
+                reportedDrops = drops;
+            }
+            // one more pass after close so nothing recorded before it is lost
+            if (stopping && claimed.get() == head) {
+                break;
+            }
+
+            sleeping = true;
+            if (published.get((int) head & mask) != head + 1 && !closed) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+            sleeping = false;
+        }
+
+        if (segment != null) {
+            segment.force();
+        }
+    }
+
+    //***************************************************************
+    //
+    //  Method:       write
+    //
+    //  Description:  Works out the result and puts one record into the
+    //                mapped segment, starting a new segment first if
+    //                this one is full
+    //
+    //  Parameters:   long time, int number1, int number2,
+    //                int number3, int status
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    private void write(long time, int number1, int number2, int number3, int status) {
+        if (segment == null) {
+            // a segment couldn't be opened; the problem was already logged
+            return;
+        }
+        if (segment.remaining() < RECORD_BYTES) {
+            try {
+                segment.force();
+                nextSegment();
+            }
+            catch (IOException e) {
+                log.error("Unable to start a new journal segment; journaling has stopped", e);
+                segment = null;
+                return;
+            }
+        }
+
+        int at = segment.position();
+        segment.putInt(at + 8, number1);
+        segment.putInt(at + 12, number2);
+        segment.putInt(at + 16, number3);
+        segment.putInt(at + 20, status);
+        if (status == RequestStatus.OK) {
+            Statistics stats = StatisticsEngine.compute(number1, number2, number3);
+            segment.putLong(at + 24, stats.getSum());
+            segment.putDouble(at + 32, stats.getMean());
+            segment.putDouble(at + 40, stats.getStddev());
+        }
+        // last, so a record is never seen half written
+        segment.putLong(at, time);
+        segment.position(at + RECORD_BYTES);
+        written.increment();
+    }
+
+    private void nextSegment() throws IOException {
+        segmentNumber++;
+        File file = new File(directory, String.format("%s%08d%s", SEGMENT_PREFIX, segmentNumber, SEGMENT_SUFFIX));
+
+        // the mapping stays good after the file is closed
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            segment = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + (long) recordsPerSegment * RECORD_BYTES);
+        }
+        segment.putInt(MAGIC);
+        segment.putInt(RECORD_BYTES);
+        segment.putLong(0L);
+    }
+
+    //***************************************************************
+    //
+    //  Method:       segments
+    //
+    //  Description:  Lists the journal segments in a directory, oldest
+    //                first
+    //
+    //  Parameters:   File directory
+    //
+    //  Returns:      File array segments
+    //
+    //**************************************************************
+    public static File[] segments(File directory) {
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+        if (files == null) {
+            return new File[0];
+        }
+        // the numbers are zero padded, so name order is write order
+        Arrays.sort(files);
+        return files;
+    }
+
+    private static int segmentNumber(File segment) {
+        String name = segment.getName();
+        try {
+            return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        }
+        catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    //***************************************************************
+    //
+    //  Method:       read
+    //
+    //  Description:  Calls visitor with every record in a segment, in
+    //                the order they were written
+    //
+    //  Parameters:   File segment, RecordVisitor visitor
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    public static void read(File segment, RecordVisitor visitor) throws IOException, InterruptedException {
+        try (RandomAccessFile raf = new RandomAccessFile(segment, "r")) {
+            ByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+
+            if (buffer.remaining() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != RECORD_BYTES) {
+                throw new IOException(segment + " is not a journal segment");
+            }
+            for (int at = HEADER_BYTES; at + RECORD_BYTES <= buffer.limit(); at += RECORD_BYTES) {
+                long time = buffer.getLong(at);
+                if (time == 0) {
+                    break;
+                }
+                visitor.visit(time, buffer.getInt(at + 8), buffer.getInt(at + 12), buffer.getInt(at + 16),
+                        buffer.getInt(at + 20), buffer.getLong(at + 24), buffer.getDouble(at + 32), buffer.getDouble(at + 40));
+            }
+        }
+    }
+
+    //******************************************************************************
+    //
+    //  Interface:     RecordVisitor
+    //
+    //  Description:   Receives the records of a segment as read takes them out
+    //
+    //******************************************************************************
+    public interface RecordVisitor
+    {
+        void visit(long time, int number1, int number2, int number3, int status,
+                   long sum, double mean, double stddev) throws IOException, InterruptedException;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,645 @@
+//******************************************************************************
+//
+//  Developer:     Cory Munselle
+//
+//  Project #:     Project 4
+//
+//  File Name:     RequestProcessor.java
+//
+//  Course:        COSC 4301 - Modern Programming
+//
+//  Due Date:      3/11/2022
+//
+//  Instructor:    Fred Kumi
+//
+//  Description:   Turns one line sent by a client into the reply the client
+//                 should see. It doesn't know anything about sockets, so the
+//                 blocking sessions and the NIO engine answer requests exactly
+//                 the same way. Each connection gets its own processor.
+//
+//  Notes:         A batch frame is "Batch" followed by any number of triples,
+//                 each one preceded by the record separator character. The
+//                 reply holds one answer per triple in the same order, also
+//                 separated by record separators. The answers are exactly what
+//                 the triple would get if it was sent on its own.
+//
+//                 When the server has a ResultCache, respond looks good single
+//                 requests up in it before calculating anything, and fills it
+//                 with the encoded frame after a miss.
+//
+//                 When the server keeps a RequestJournal, every triple that
+//                 respond answers is handed to it, batch items included.
+//
+//******************************************************************************
+
+import java.io.UTFDataFormatException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class RequestProcessor
+{
+    public static final String BYE = "Bye";
+    // heartbeat; answered right away and never counted as a request
+    public static final String PING = "Ping";
+    public static final String PONG = "Pong";
+
+    public static final String BATCH = "Batch";
+    public static final char SEPARATOR = '\u001E';
+    // keeps the longest possible batch reply under the 64 KB writeUTF limit
+    public static final int MAX_BATCH = 500;
+    // clients split batches so the request frame stays under the server's default --max-frame
+    public static final int MAX_BATCH_BYTES = 12 * 1024;
+    public static final String BATCH_TOO_LARGE = "A batch can hold at most " + MAX_BATCH + " requests.";
+
+    private static final byte[] BYE_BYTES = {'B', 'y', 'e'};
+    private static final byte[] PING_BYTES = {'P', 'i', 'n', 'g'};
+    private static final byte[] BATCH_BYTES = {'B', 'a', 't', 'c', 'h', (byte) SEPARATOR};
+    // every error reply as a ready to send frame, indexed by status
+    private static final byte[][] ERROR_FRAMES = encodeMessages();
+    private static final byte[] BATCH_TOO_LARGE_FRAME = encodeConstant(BATCH_TOO_LARGE);
+
+    private final ResultCache cache;
+    private final ServerMetrics metrics;
+    private final RequestJournal journal;
+    // an event loop thread must never park, so it doesn't wait for another connection's miss
+    private boolean onEventLoop = false;
+
+    private int number1;
+    private int number2;
+    private int number3;
+
+    // parser output, reused so a request doesn't allocate anything to be parsed
+    private final int[] parsed = new int[3];
+    private byte[] encoded = null;
+    // only for processBatch, which has to hand back a String
+    private byte[] batchScratch = null;
+
+    //***************************************************************
+    //
+    //  Method:       Constructor
+    //
+    //  Description:  Defines variables for use in the program
+    //
+    //  Parameters:   None
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    public RequestProcessor() {
+        this(null, null, null);
+    }
+
+    //***************************************************************
+    //
+    //  Method:       Constructor
+    //
+    //  Description:  Defines variables for use in the program and
+    //                shares the server's result cache and metrics
+    //
+    //  Parameters:   ResultCache cache (null for no caching),
+    //                ServerMetrics metrics (null to not record any)
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    public RequestProcessor(ResultCache cache, ServerMetrics metrics) {
+        this(cache, metrics, null);
+    }
+
+    //***************************************************************
+    //
+    //  Method:       Constructor
+    //
+    //  Description:  Defines variables for use in the program and
+    //                shares the server's result cache, metrics and
+    //                journal
+    //
+    //  Parameters:   ResultCache cache (null for no caching),
+    //                ServerMetrics metrics (null to not record any),
+    //                RequestJournal journal (null to not keep one)
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    public RequestProcessor(ResultCache cache, ServerMetrics metrics, RequestJournal journal) {
+        this.number1 = 0;
+        this.number2 = 0;
+        this.number3 = 0;
+        this.cache = cache;
+        this.metrics = metrics;
+        this.journal = journal;
+    }
+
+    //***************************************************************
+    //
+    //  Method:       setOnEventLoop
+    //
+    //  Description:  Marks this processor as used by an NIO event loop,
+    //                which computes a shared cache miss itself instead
+    //                of waiting for the connection already computing it
+    //
+    //  Parameters:   boolean onEventLoop
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    public void setOnEventLoop(boolean onEventLoop) {
+        this.onEventLoop = onEventLoop;
+    }
+
+    //***************************************************************
+    //
+    //  Method:       isBye
+    //
+    //  Description:  Checks if the client is asking to leave
+    //
+    //  Parameters:   String line
+    //
+    //  Returns:      boolean bye
+    //
+    //**************************************************************
+    public static boolean isBye(String line) {
+        return BYE.equals(line);
+    }
+
+    //***************************************************************
+    //
+    //  Method:       isBye
+    //
+    //  Description:  isBye for a frame that hasn't been decoded
+    //
+    //  Parameters:   byte array frame, int offset, int length
+    //
+    //  Returns:      boolean bye
+    //
+    //**************************************************************
+    public static boolean isBye(byte[] frame, int offset, int length) {
+        return startsWith(frame, offset, length, BYE_BYTES) && length == BYE_BYTES.length;
+    }
+
+    //***************************************************************
+    //
+    //  Method:       isPing
+    //
+    //  Description:  Checks if a frame that hasn't been decoded is a
+    //                heartbeat
+    //
+    //  Parameters:   byte array frame, int offset, int length
+    //
+    //  Returns:      boolean ping
+    //
+    //**************************************************************
+    public static boolean isPing(byte[] frame, int offset, int length) {
+        return startsWith(frame, offset, length, PING_BYTES) && length == PING_BYTES.length;
+    }
+
+    //***************************************************************
+    //
+    //  Method:       errorReply
+    //
+    //  Description:  Writes the ready made reply frame for a failed
+    //                status into reply
+    //
+    //  Parameters:   int status, byte array reply
+    //
+    //  Returns:      int bytes written to reply
+    //
+    //**************************************************************
+    public static int errorReply(int status, byte[] reply) {
+        return copy(ERROR_FRAMES[status], reply);
+    }
+
+    //***************************************************************
+    //
+    //  Method:       process
+    //
+    //  Description:  Parses and validates the line and builds the reply.
+    //                Bye should be checked by the caller first since it
+    //                has no reply.
+    //
+    //  Parameters:   String line
+    //
+    //  Returns:      String reply
+    //
+    //**************************************************************
+    public String process(String line) {
+        if (encoded == null) {
+            encoded = new byte[Utf8Frames.MAX_FRAME_BYTES];
+        }
+        try {
+            int length = Utf8Frames.encode(line, encoded, 0);
+            return process(encoded, Utf8Frames.HEADER_BYTES, length - Utf8Frames.HEADER_BYTES);
+        }
+        catch (UTFDataFormatException e) {
+            // too long to have come off the wire, so it can't be three numbers either
+            return RequestStatus.message(RequestStatus.INVALID_COUNT);
+        }
+    }
+
+    //***************************************************************
+    //
+    //  Method:       process
+    //
+    //  Description:  Same as process(String) but works on the modified
+    //                UTF-8 body of a frame as it came off the wire, so
+    //                the request is never turned into a String. Error
+    //                replies are constants; nothing is allocated until
+    //                the statistics are formatted.
+    //
+    //  Parameters:   byte array frame, int offset, int length
+    //
+    //  Returns:      String reply
+    //
+    //**************************************************************
+    public String process(byte[] frame, int offset, int length) {
+        if (isBatch(frame, offset, length)) {
+            return processBatch(frame, offset, length);
+        }
+        int status = parseInput(frame, offset, length);
+
+        if (status != RequestStatus.OK) {
+            return RequestStatus.message(status);
+        }
+        return processInput();
+    }
+
+    //***************************************************************
+    //
+    //  Method:       respond
+    //
+    //  Description:  Same as process, but writes the whole reply frame
+    //                (length header and body) into reply so it can go
+    //                to the socket as is. Good single requests go
+    //                through the result cache when there is one.
+    //
+    //  Parameters:   byte array frame, int offset, int length,
+    //                byte array reply (at least MAX_FRAME_BYTES long)
+    //
+    //  Returns:      int bytes written to reply
+    //
+    //**************************************************************
+    public int respond(byte[] frame, int offset, int length, byte[] reply) throws UTFDataFormatException {
+        long start = metrics == null ? 0L : System.nanoTime();
+
+        if (isBatch(frame, offset, length)) {
+            int replyLength = respondBatch(frame, offset, length, reply);
+            if (metrics != null) {
+                metrics.recordCompute(System.nanoTime() - start);
+            }
+            return replyLength;
+        }
+        int status = parseInput(frame, offset, length);
+        long parsedAt = metrics == null ? 0L : System.nanoTime();
+        boolean parsedOk = status == RequestStatus.OK;
+
+        if (parsedOk) {
+            status = RequestStatus.validate(number1, number2, number3);
+        }
+        if (journal != null) {
+            // the numbers are left over from the last request if these didn't parse
+            if (parsedOk) {
+                journal.record(number1, number2, number3, status);
+            }
+            else {
+                journal.record(0, 0, 0, status);
+            }
+        }
+        int replyLength;
+        if (status != RequestStatus.OK) {
+            replyLength = copy(ERROR_FRAMES[status], reply);
+        }
+        else if (cache == null) {
+            replyLength = encodeOutput(reply);
+        }
+        else {
+            long key = ResultCache.key(number1, number2, number3);
+            byte[] cached = cache.get(key);
+            if (cached == null) {
+                // concurrent misses on the same triple share one computation
+                cached = cache.computeIfMissing(key, () -> Arrays.copyOf(reply, encodeOutput(reply)), !onEventLoop);
+            }
+            replyLength = copy(cached, reply);
+        }
+
+        if (metrics != null) {
+            metrics.recordParse(parsedAt - start);
+            metrics.recordCompute(System.nanoTime() - parsedAt);
+            metrics.recordStatus(status);
+        }
+        return replyLength;
+    }
+
+    //***************************************************************
+    //
+    //  Method:       estimateCount
+    //
+    //  Description:  How many values the sequence for a frame holds, so
+    //                admission control can tell big requests from small
+    //                ones before taking them on. Nothing is kept.
+    //
+    //  Parameters:   byte array frame, int offset, int length
+    //
+    //  Returns:      long count, or 0 for a batch or a bad request
+    //
+    //**************************************************************
+    public long estimateCount(byte[] frame, int offset, int length) {
+        if (isBatch(frame, offset, length)
+                || TripleParser.parse(frame, offset, offset + length, parsed) != RequestStatus.OK) {
+            return 0;
+        }
+        return estimateCount(parsed[0], parsed[1], parsed[2]);
+    }
+
+    //***************************************************************
+    //
+    //  Method:       estimateCount
+    //
+    //  Description:  estimateCount for a triple that is already parsed
+    //
+    //  Parameters:   int number1, int number2, int number3
+    //
+    //  Returns:      long count, or 0 for a bad request
+    //
+    //**************************************************************
+    public static long estimateCount(int number1, int number2, int number3) {
+        if (RequestStatus.validate(number1, number2, number3) != RequestStatus.OK) {
+            return 0;
+        }
+        return StatisticsEngine.sequenceCount(number1, number2, number3);
+    }
+
+    //***************************************************************
+    //
+    //  Method:       parseInput
+    //
+    //  Description:  Scans the frame bytes for three separate integers.
+    //                This gives the same answers the old
+    //                split("\\s+") and Integer.parseInt version did.
+    //
+    //  Parameters:   byte array frame, int offset, int length
+    //
+    //  Returns:      int status (OK, INVALID_COUNT or NOT_A_NUMBER)
+    //
+    //**************************************************************
+    public int parseInput(byte[] frame, int offset, int length) {
+        int status = TripleParser.parse(frame, offset, offset + length, parsed);
+
+        if (status == RequestStatus.OK) {
+            number1 = parsed[0];
+            number2 = parsed[1];
+            number3 = parsed[2];
+        }
+        return status;
+    }
+
+    //***************************************************************
+    //
+    //  Method:       processInput
+    //
+    //  Description:  Validates the parsed integers and calculates the
+    //                statistics if they are good
+    //
+    //  Parameters:   None
+    //
+    //  Returns:      String reply
+    //
+    //**************************************************************
+    public String processInput() {
+        int status = RequestStatus.validate(number1, number2, number3);
+
+        if (status != RequestStatus.OK) {
+            return RequestStatus.message(status);
+        }
+        return calculateOutput();
+    }
+
+    //***************************************************************
+    //
+    //  Method:       calculateOutput
+    //
+    //  Description:  Calculates the sum, mean, and standard dev of the
+    //                sequence described by the client input
+    //
+    //  Parameters:   None
+    //
+    //  Returns:      String reply
+    //
+    //**************************************************************
+    public String calculateOutput() {
+        // with -ea every small request is also run through the original ArrayList version
+        assert StatisticsEngine.matchesReference(number1, number2, number3)
+                : "closed form disagrees with reference for " + number1 + " " + number2 + " " + number3;
+
+        return StatisticsEngine.compute(number1, number2, number3).format();
+    }
+
+    //***************************************************************
+    //
+    //  Method:       encodeOutput
+    //
+    //  Description:  calculateOutput, written straight into reply as a
+    //                finished frame instead of being made into a String
+    //
+    //  Parameters:   byte array reply
+    //
+    //  Returns:      int bytes written to reply
+    //
+    //**************************************************************
+    private int encodeOutput(byte[] reply) {
+        assert StatisticsEngine.matchesReference(number1, number2, number3)
+                : "closed form disagrees with reference for " + number1 + " " + number2 + " " + number3;
+
+        Statistics stats = StatisticsEngine.compute(number1, number2, number3);
+        return ResponseEncoder.encodeFrame(stats.getSum(), stats.getMean(), stats.getStddev(), reply);
+    }
+
+    //***************************************************************
+    //
+    //  Method:       isBatch
+    //
+    //  Description:  Checks if a frame is a batch of triples
+    //
+    //  Parameters:   byte array frame, int offset, int length
+    //
+    //  Returns:      boolean batch
+    //
+    //**************************************************************
+    public static boolean isBatch(byte[] frame, int offset, int length) {
+        return startsWith(frame, offset, length, BATCH_BYTES);
+    }
+
+    //***************************************************************
+    //
+    //  Method:       processBatch
+    //
+    //  Description:  respondBatch for callers that want the reply as a
+    //                String
+    //
+    //  Parameters:   byte array frame, int offset, int length
+    //
+    //  Returns:      String reply
+    //
+    //**************************************************************
+    public String processBatch(byte[] frame, int offset, int length) {
+        if (batchScratch == null) {
+            batchScratch = new byte[Utf8Frames.MAX_FRAME_BYTES];
+        }
+        int replyLength = respondBatch(frame, offset, length, batchScratch);
+        // every reply is plain ASCII, separators included
+        return new String(batchScratch, Utf8Frames.HEADER_BYTES, replyLength - Utf8Frames.HEADER_BYTES, StandardCharsets.US_ASCII);
+    }
+
+    //***************************************************************
+    //
+    //  Method:       respondBatch
+    //
+    //  Description:  Answers every triple in a batch frame in one tight
+    //                loop, writing the answers straight into the reply
+    //                frame. The triples are parsed in place and the
+    //                answers encoded in place, so nothing is made per
+    //                item.
+    //
+    //  Parameters:   byte array frame, int offset, int length,
+    //                byte array reply (at least MAX_FRAME_BYTES long)
+    //
+    //  Returns:      int bytes written to reply
+    //
+    //**************************************************************
+    private int respondBatch(byte[] frame, int offset, int length, byte[] reply) {
+        int end = offset + length;
+        int items = 0;
+        for (int i = offset + BATCH.length(); i < end; i++) {
+            if (frame[i] == SEPARATOR) {
+                items++;
+            }
+        }
+        if (items > MAX_BATCH) {
+            return copy(BATCH_TOO_LARGE_FRAME, reply);
+        }
+
+        int at = Utf8Frames.HEADER_BYTES;
+        int first = offset + BATCH_BYTES.length;
+        int start = first;
+        while (true) {
+            int stop = start;
+            while (stop < end && frame[stop] != SEPARATOR) {
+                stop++;
+            }
+            if (start != first) {
+                reply[at++] = (byte) SEPARATOR;
+            }
+            at = appendBatchItem(frame, start, stop, reply, at);
+
+            if (stop == end) {
+                break;
+            }
+            start = stop + 1;
+        }
+
+        // MAX_BATCH keeps this under the 64 KB a frame can hold
+        int bodyLength = at - Utf8Frames.HEADER_BYTES;
+        reply[0] = (byte) (bodyLength >>> 8);
+        reply[1] = (byte) bodyLength;
+        return at;
+    }
+
+    //***************************************************************
+    //
+    //  Method:       appendBatchItem
+    //
+    //  Description:  Parses, validates and answers one triple of a batch
+    //                straight into the batch reply
+    //
+    //  Parameters:   byte array frame, int start, int end,
+    //                byte array reply, int at
+    //
+    //  Returns:      int offset in reply just past the answer
+    //
+    //**************************************************************
+    private int appendBatchItem(byte[] frame, int start, int end, byte[] reply, int at) {
+        int status = TripleParser.parse(frame, start, end, parsed);
+        boolean parsedOk = status == RequestStatus.OK;
+
+        if (parsedOk) {
+            status = RequestStatus.validate(parsed[0], parsed[1], parsed[2]);
+        }
+        if (metrics != null) {
+            metrics.recordStatus(status);
+        }
+        if (journal != null) {
+            if (parsedOk) {
+                journal.record(parsed[0], parsed[1], parsed[2], status);
+            }
+            else {
+                journal.record(0, 0, 0, status);
+            }
+        }
+        if (status != RequestStatus.OK) {
+            // the message without its frame header
+            byte[] message = ERROR_FRAMES[status];
+            System.arraycopy(message, Utf8Frames.HEADER_BYTES, reply, at, message.length - Utf8Frames.HEADER_BYTES);
+            return at + message.length - Utf8Frames.HEADER_BYTES;
+        }
+        Statistics stats = StatisticsEngine.compute(parsed[0], parsed[1], parsed[2]);
+        return ResponseEncoder.putStatistics(stats.getSum(), stats.getMean(), stats.getStddev(), reply, at);
+    }
+
+    private static int copy(byte[] src, byte[] reply) {
+        System.arraycopy(src, 0, reply, 0, src.length);
+        return src.length;
+    }
+
+    //***************************************************************
+    //
+    //  Method:       encodeMessages
+    //
+    //  Description:  Encodes every error message once, up front
+    //
+    //  Parameters:   None
+    //
+    //  Returns:      byte array frames, indexed by status
+    //
+    //**************************************************************
+    private static byte[][] encodeMessages() {
+        byte[][] frames = new byte[RequestStatus.COUNT][];
+
+        for (int status = RequestStatus.INVALID_COUNT; status < frames.length; status++) {
+            frames[status] = encodeConstant(RequestStatus.message(status));
+        }
+        return frames;
+    }
+
+    private static byte[] encodeConstant(String message) {
+        byte[] scratch = new byte[Utf8Frames.MAX_FRAME_BYTES];
+        try {
+            return Arrays.copyOf(scratch, Utf8Frames.encode(message, scratch, 0));
+        }
+        catch (UTFDataFormatException e) {
+            throw new IllegalStateException("Message is too long for a frame", e);
+        }
+    }
+
+    //***************************************************************
+    //
+    //  Method:       startsWith
+    //
+    //  Description:  Compares the start of a frame against a constant
+    //
+    //  Parameters:   byte array frame, int offset, int length,
+    //                byte array prefix
+    //
+    //  Returns:      boolean matches
+    //
+    //**************************************************************
+    public static boolean startsWith(byte[] frame, int offset, int length, byte[] prefix) {
+        if (length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (frame[offset + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
\ No newline at end of file
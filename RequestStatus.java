@@ -0,0 +1,107 @@
+//******************************************************************************
+//
+//  Developer:     Cory Munselle
+//
+//  Project #:     Project 4
+//
+//  File Name:     RequestStatus.java
+//
+//  Course:        COSC 4301 - Modern Programming
+//
+//  Due Date:      3/11/2022
+//
+//  Instructor:    Fred Kumi
+//
+//  Description:   Numbers every way a request can turn out and keeps the
+//                 message the client is shown for each one, so the server can
+//                 pass a small int around instead of the error strings.
+//
+//******************************************************************************
+
+public final class RequestStatus
+{
+    public static final int OK = 0;
+    public static final int INVALID_COUNT = 1;
+    public static final int NOT_A_NUMBER = 2;
+    public static final int NOT_POSITIVE = 3;
+    public static final int NOT_ASCENDING = 4;
+    public static final int BAD_STEP = 5;
+    public static final int UNKNOWN_REQUEST = 6;
+    public static final int TOO_LARGE = 7;
+    public static final int RATE_LIMITED = 8;
+    public static final int BUSY = 9;
+    // one past the highest status, for arrays indexed by status
+    public static final int COUNT = 10;
+
+    private static final String[] MESSAGES = {
+            null,
+            "Invalid number of digits. Please provide exactly three numbers.",
+            "One or more supplied values is not a number. Please supply three numbers, \nseparated by spaces.",
+            "All numbers provided must be greater than zero.",
+            "The first number must be less than the second.",
+            "The third number must be either 1 or 2.",
+            "Unknown request type.",
+            "The request is too large.",
+            "Too many requests. Please slow down.",
+            "The server is busy. Please try again later."
+    };
+
+    private RequestStatus() {
+    }
+
+    //***************************************************************
+    //
+    //  Method:       message
+    //
+    //  Description:  Returns the message the client sees for a failed
+    //                request
+    //
+    //  Parameters:   int status
+    //
+    //  Returns:      String message, or null for OK
+    //
+    //**************************************************************
+    public static String message(int status) {
+        return MESSAGES[status];
+    }
+
+    //***************************************************************
+    //
+    //  Method:       isKnown
+    //
+    //  Description:  Checks that a status read off the wire is one this
+    //                build has a message for
+    //
+    //  Parameters:   int status
+    //
+    //  Returns:      boolean known
+    //
+    //**************************************************************
+    public static boolean isKnown(int status) {
+        return status >= 0 && status < COUNT;
+    }
+
+    //***************************************************************
+    //
+    //  Method:       validate
+    //
+    //  Description:  Applies the server's rules to a parsed triple
+    //
+    //  Parameters:   int number1, int number2, int number3
+    //
+    //  Returns:      int status
+    //
+    //**************************************************************
+    public static int validate(int number1, int number2, int number3) {
+        if (number1 <= 0 || number2 <= 0 || number3 <= 0) {
+            return NOT_POSITIVE;
+        }
+        else if (number1 >= number2) {
+            return NOT_ASCENDING;
+        }
+        else if (number3 != 1 && number3 != 2) {
+            return BAD_STEP;
+        }
+        return OK;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,169 @@
+//******************************************************************************
+//
+//  Developer:     Cory Munselle
+//
+//  Project #:     Project 4
+//
+//  File Name:     ResponseEncoder.java
+//
+//  Course:        COSC 4301 - Modern Programming
+//
+//  Description:   Writes the Sum/Mean/Standard deviation reply straight into a
+//                 byte array as ASCII, without going through String.format, a
+//                 Formatter, or a String at all. The text is exactly what
+//                 Statistics.FORMAT produces, and since it is all ASCII the
+//                 bytes are also its modified UTF-8 encoding, so they can go
+//                 into a writeUTF frame as they are.
+//
+//  Notes:         The means and standard deviations are printed to three
+//                 places by scaling to a long. String.format rounds the
+//                 shortest decimal form of a double half up, which is the
+//                 same as rounding the double itself except right at a tie,
+//                 so values that land within a hair of one (and anything too
+//                 big to scale exactly) are still handed to String.format.
+//                 That's about one value in five hundred.
+//
+//******************************************************************************
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+public final class ResponseEncoder
+{
+    private static final byte[] SUM = "Sum: ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] MEAN = (System.lineSeparator() + "Mean: ").getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] STDDEV = (System.lineSeparator() + "Standard deviation: ").getBytes(StandardCharsets.US_ASCII);
+
+    // "%.3f" of the largest double: a sign, 309 digits and ".000"
+    private static final int MAX_DECIMAL_CHARS = 314;
+    // longest a reply body can be, whatever the values
+    public static final int MAX_BODY_BYTES = SUM.length + 20 + MEAN.length + STDDEV.length + 2 * MAX_DECIMAL_CHARS;
+
+    // above this, scaling by 1000 can be off by more than the tie margin
+    private static final double FAST_LIMIT = 1e9;
+    // how close to a tie, in thousandths, a value has to be to take the slow way
+    private static final double TIE_MARGIN = 1e-3;
+
+    private static final byte[] DIGITS = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9'};
+
+    private ResponseEncoder() {
+    }
+
+    //***************************************************************
+    //
+    //  Method:       encodeFrame
+    //
+    //  Description:  Writes a whole writeUTF frame, the two byte length
+    //                and the reply text, at the start of dst
+    //
+    //  Parameters:   long sum, double mean, double stddev, byte array dst
+    //
+    //  Returns:      int bytes written
+    //
+    //**************************************************************
+    public static int encodeFrame(long sum, double mean, double stddev, byte[] dst) {
+        int length = putStatistics(sum, mean, stddev, dst, Utf8Frames.HEADER_BYTES) - Utf8Frames.HEADER_BYTES;
+
+        dst[0] = (byte) (length >>> 8);
+        dst[1] = (byte) length;
+        return Utf8Frames.HEADER_BYTES + length;
+    }
+
+    //***************************************************************
+    //
+    //  Method:       putStatistics
+    //
+    //  Description:  Writes the reply text for one result into dst
+    //
+    //  Parameters:   long sum, double mean, double stddev,
+    //                byte array dst, int offset
+    //
+    //  Returns:      int offset just past the last byte written
+    //
+    //**************************************************************
+    public static int putStatistics(long sum, double mean, double stddev, byte[] dst, int offset) {
+        offset = put(SUM, dst, offset);
+        offset = putLong(sum, dst, offset);
+        offset = put(MEAN, dst, offset);
+        offset = putFixed3(mean, dst, offset);
+        offset = put(STDDEV, dst, offset);
+        return putFixed3(stddev, dst, offset);
+    }
+
+    //***************************************************************
+    //
+    //  Method:       putFixed3
+    //
+    //  Description:  Writes value the way "%.3f" would
+    //
+    //  Parameters:   double value, byte array dst, int offset
+    //
+    //  Returns:      int offset just past the last byte written
+    //
+    //**************************************************************
+    public static int putFixed3(double value, byte[] dst, int offset) {
+        // negative numbers (and -0.0) never come up in a reply, so they can go the slow way
+        if (!(value >= 0.0 && value < FAST_LIMIT) || Double.doubleToRawLongBits(value) == Long.MIN_VALUE) {
+            return putSlow(value, dst, offset);
+        }
+        double scaled = value * 1000.0;
+        long thousandths = (long) scaled;
+        double fraction = scaled - thousandths;
+
+        if (Math.abs(fraction - 0.5) < TIE_MARGIN) {
+            return putSlow(value, dst, offset);
+        }
+        if (fraction > 0.5) {
+            thousandths++;
+        }
+
+        offset = putLong(thousandths / 1000, dst, offset);
+        int places = (int) (thousandths % 1000);
+        dst[offset] = '.';
+        dst[offset + 1] = DIGITS[places / 100];
+        dst[offset + 2] = DIGITS[places / 10 % 10];
+        dst[offset + 3] = DIGITS[places % 10];
+        return offset + 4;
+    }
+
+    //***************************************************************
+    //
+    //  Method:       putLong
+    //
+    //  Description:  Writes value in decimal, the way "%d" would
+    //
+    //  Parameters:   long value, byte array dst, int offset
+    //
+    //  Returns:      int offset just past the last byte written
+    //
+    //**************************************************************
+    public static int putLong(long value, byte[] dst, int offset) {
+        if (value == Long.MIN_VALUE) {
+            return put(Long.toString(value).getBytes(StandardCharsets.US_ASCII), dst, offset);
+        }
+        if (value < 0) {
+            dst[offset++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (long rest = value / 10; rest != 0; rest /= 10) {
+            digits++;
+        }
+        // filled from the right so the digits come out in order
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            dst[i] = DIGITS[(int) (value % 10)];
+            value /= 10;
+        }
+        return offset + digits;
+    }
+
+    private static int putSlow(double value, byte[] dst, int offset) {
+        // Locale.ROOT so the slow way prints the same '.' the fast way does
+        return put(String.format(Locale.ROOT, "%.3f", value).getBytes(StandardCharsets.US_ASCII), dst, offset);
+    }
+
+    private static int put(byte[] src, byte[] dst, int offset) {
+        System.arraycopy(src, 0, dst, offset, src.length);
+        return offset + src.length;
+    }
+}
\ No newline at end of file
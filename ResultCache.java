@@ -0,0 +1,399 @@
+//******************************************************************************
+//
+//  Developer:     Cory Munselle
+//
+//  Project #:     Project 4
+//
+//  File Name:     ResultCache.java
+//
+//  Course:        COSC 4301 - Modern Programming
+//
+//  Due Date:      3/11/2022
+//
+//  Instructor:    Fred Kumi
+//
+//  Description:   Remembers the reply frame for recently answered triples so a
+//                 repeated request is answered by copying bytes instead of
+//                 calculating and formatting the statistics again. One cache
+//                 is shared by every connection on the server.
+//
+//  Notes:         The cache is split into segments, each behind its own lock,
+//                 so connections only contend when they hit the same segment.
+//                 Each segment evicts its least recently used entry once it is
+//                 full. Segments are keyed by the primitive long and keep their
+//                 table and access order in arrays, so a hit allocates nothing.
+//
+//                 computeIfMissing coalesces misses: while one connection is
+//                 working out the reply for a triple, others asking for the
+//                 same triple take its frame instead of working it out again.
+//                 A session thread waits for that frame. An NIO event loop
+//                 never parks, since that would stall every connection on it;
+//                 it takes the frame if it is already done and otherwise works
+//                 the reply out itself, which the closed forms keep cheap (see
+//                 CoalescingBenchmark). Only misses touch the in-flight map,
+//                 so hits still allocate nothing.
+//
+//******************************************************************************
+
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+public final class ResultCache
+{
+    private static final int MAX_SEGMENTS = 16;
+
+    private final Segment[] segments;
+    private final int maxEntries;
+    // replies being worked out right now, for callers that miss on the same key
+    private final ConcurrentHashMap<Long, CompletableFuture<byte[]>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    //***************************************************************
+    //
+    //  Method:       Constructor
+    //
+    //  Description:  Splits maxEntries evenly between the segments
+    //
+    //  Parameters:   int maxEntries
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    public ResultCache(int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("The cache needs room for at least one entry");
+        }
+        this.maxEntries = maxEntries;
+
+        // small caches get fewer segments so each one still holds a useful number of entries
+        int count = Integer.highestOneBit(Math.min(MAX_SEGMENTS, Math.max(1, maxEntries / 64)));
+        segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment((maxEntries + count - 1) / count);
+        }
+    }
+
+    //***************************************************************
+    //
+    //  Method:       key
+    //
+    //  Description:  Packs a validated triple into one long. number1
+    //                and number2 are positive ints and number3 is 1 or
+    //                2, so all three fit without overlapping.
+    //
+    //  Parameters:   int number1, int number2, int number3
+    //
+    //  Returns:      long key
+    //
+    //**************************************************************
+    public static long key(int number1, int number2, int number3) {
+        return ((long) number1 << 32) | ((long) number2 << 1) | (number3 - 1);
+    }
+
+    //***************************************************************
+    //
+    //  Method:       get
+    //
+    //  Description:  Looks up the reply frame for a key
+    //
+    //  Parameters:   long key
+    //
+    //  Returns:      byte array frame, or null if it isn't cached
+    //
+    //**************************************************************
+    public byte[] get(long key) {
+        byte[] frame = segmentFor(key).get(key);
+
+        if (frame == null) {
+            misses.increment();
+        }
+        else {
+            hits.increment();
+        }
+        return frame;
+    }
+
+    //***************************************************************
+    //
+    //  Method:       put
+    //
+    //  Description:  Stores the reply frame for a key, evicting the
+    //                least recently used entry of its segment if needed
+    //
+    //  Parameters:   long key, byte array frame
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    public void put(long key, byte[] frame) {
+        segmentFor(key).put(key, frame);
+    }
+
+    //***************************************************************
+    //
+    //  Method:       computeIfMissing
+    //
+    //  Description:  Called after get missed. Computes and stores the
+    //                frame for a key, unless another caller is already
+    //                computing it. Then its frame is used instead: a
+    //                caller that may wait waits for it, and one that
+    //                may not only takes it if it is already done and
+    //                otherwise computes the frame itself.
+    //
+    //  Parameters:   long key, Supplier compute (makes the frame),
+    //                boolean mayWait (false on an event loop thread)
+    //
+    //  Returns:      byte array frame
+    //
+    //**************************************************************
+    public byte[] computeIfMissing(long key, Supplier<byte[]> compute, boolean mayWait) {
+        CompletableFuture<byte[]> flight = new CompletableFuture<>();
+        CompletableFuture<byte[]> leader = inFlight.putIfAbsent(key, flight);
+
+        if (leader != null) {
+            if (mayWait || leader.isDone()) {
+                try {
+                    byte[] frame = leader.join();
+                    coalesced.increment();
+                    return frame;
+                }
+                catch (CompletionException | CancellationException e) {
+                    // the leader failed; try it here, so this caller gets its own error
+                }
+            }
+            // the leader stores the frame, so this copy doesn't need to be
+            return compute.get();
+        }
+        try {
+            // the last leader may have finished between the miss and putIfAbsent
+            byte[] frame = segmentFor(key).get(key);
+            if (frame == null) {
+                frame = compute.get();
+                put(key, frame);
+            }
+            flight.complete(frame);
+            return frame;
+        }
+        catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        }
+        finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    //***************************************************************
+    //
+    //  Method:       size
+    //
+    //  Description:  Counts the entries currently cached
+    //
+    //  Parameters:   None
+    //
+    //  Returns:      int size
+    //
+    //**************************************************************
+    public int size() {
+        int size = 0;
+
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return "ResultCache[size=" + size() + "/" + maxEntries + ", hits=" + getHits()
+                + ", misses=" + getMisses() + ", evictions=" + getEvictions()
+                + ", coalesced=" + getCoalesced() + "]";
+    }
+
+    private Segment segmentFor(long key) {
+        // mix the high and low halves so triples that only differ in number1 spread out too
+        int hash = (int) (key ^ (key >>> 32)) * 0x9E3779B9;
+        return segments[(hash >>> 16) & (segments.length - 1)];
+    }
+
+    //******************************************************************************
+    //
+    //  Class:         Segment
+    //
+    //  Description:   One slice of the cache: a hash table of long keys with its
+    //                 entries also kept on a list in access order, so the least
+    //                 recently used one is always at the tail. Everything lives in
+    //                 arrays sized up front, so a lookup never boxes its key and
+    //                 nothing but the stored frames is ever allocated.
+    //
+    //******************************************************************************
+    private final class Segment
+    {
+        // marks the end of a bucket chain or of the access order list
+        private static final int NONE = -1;
+
+        private final int capacity;
+        private final long[] keys;
+        private final byte[][] frames;
+        // first entry in each bucket, and the next entry in the same bucket
+        private final int[] buckets;
+        private final int[] chain;
+        // the access order list; head is the most recently used entry
+        private final int[] newer;
+        private final int[] older;
+        private int head = NONE;
+        private int tail = NONE;
+        private int size;
+
+        private Segment(int capacity) {
+            this.capacity = capacity;
+            this.keys = new long[capacity];
+            this.frames = new byte[capacity][];
+            this.chain = new int[capacity];
+            this.newer = new int[capacity];
+            this.older = new int[capacity];
+            this.buckets = new int[Integer.highestOneBit(Math.max(1, capacity - 1)) << 1];
+            Arrays.fill(buckets, NONE);
+        }
+
+        private synchronized byte[] get(long key) {
+            int entry = find(key);
+            if (entry == NONE) {
+                return null;
+            }
+            moveToHead(entry);
+            return frames[entry];
+        }
+
+        //***************************************************************
+        //
+        //  Method:       put
+        //
+        //  Description:  Stores the frame for a key. When the segment is
+        //                full the least recently used entry is unhooked
+        //                and its slot reused.
+        //
+        //  Parameters:   long key, byte array frame
+        //
+        //  Returns:      N/A
+        //
+        //**************************************************************
+        private synchronized void put(long key, byte[] frame) {
+            int entry = find(key);
+            if (entry != NONE) {
+                frames[entry] = frame;
+                moveToHead(entry);
+                return;
+            }
+            if (size < capacity) {
+                entry = size++;
+            }
+            else {
+                entry = tail;
+                unlinkOrder(entry);
+                unlinkBucket(entry);
+                evictions.increment();
+            }
+            keys[entry] = key;
+            frames[entry] = frame;
+            int bucket = bucketOf(key);
+            chain[entry] = buckets[bucket];
+            buckets[bucket] = entry;
+            linkHead(entry);
+        }
+
+        private synchronized int size() {
+            return size;
+        }
+
+        private int find(long key) {
+            for (int entry = buckets[bucketOf(key)]; entry != NONE; entry = chain[entry]) {
+                if (keys[entry] == key) {
+                    return entry;
+                }
+            }
+            return NONE;
+        }
+
+        private int bucketOf(long key) {
+            // the low bits of the segment hash, which segmentFor doesn't use
+            return (int) ((key ^ (key >>> 32)) * 0x9E3779B9) & (buckets.length - 1);
+        }
+
+        private void moveToHead(int entry) {
+            if (entry != head) {
+                unlinkOrder(entry);
+                linkHead(entry);
+            }
+        }
+
+        private void linkHead(int entry) {
+            newer[entry] = NONE;
+            older[entry] = head;
+            if (head != NONE) {
+                newer[head] = entry;
+            }
+            head = entry;
+            if (tail == NONE) {
+                tail = entry;
+            }
+        }
+
+        private void unlinkOrder(int entry) {
+            if (newer[entry] != NONE) {
+                older[newer[entry]] = older[entry];
+            }
+            else {
+                head = older[entry];
+            }
+            if (older[entry] != NONE) {
+                newer[older[entry]] = newer[entry];
+            }
+            else {
+                tail = newer[entry];
+            }
+        }
+
+        private void unlinkBucket(int entry) {
+            int bucket = bucketOf(keys[entry]);
+            if (buckets[bucket] == entry) {
+                buckets[bucket] = chain[entry];
+                return;
+            }
+            int previous = buckets[bucket];
+            while (chain[previous] != entry) {
+                previous = chain[previous];
+            }
+            chain[previous] = chain[entry];
+        }
+    }
+}
\ No newline at end of file
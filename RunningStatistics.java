@@ -0,0 +1,115 @@
+//******************************************************************************
+//
+//  Developer:     Cory Munselle
+//
+//  Project #:     Project 4
+//
+//  File Name:     RunningStatistics.java
+//
+//  Course:        COSC 4301 - Modern Programming
+//
+//  Due Date:      3/11/2022
+//
+//  Instructor:    Fred Kumi
+//
+//  Description:   Keeps the count, sum, mean, and spread of values as they go
+//                 by, so statistics for a sequence of any length take the same
+//                 few fields of memory. The mean and variance are updated with
+//                 Welford's method, which doesn't lose precision the way
+//                 summing squares and subtracting does once the values are
+//                 large and close together. The sum is kept exactly.
+//
+//  Notes:         Two accumulators over different parts of a sequence can be
+//                 merged (Chan et al.), so a sequence can be split into chunks
+//                 and each chunk counted separately.
+//
+//                 Nothing on the serving path uses this; requests are answered
+//                 from closed forms. It backs StatisticsEngine.accumulate, which
+//                 the -ea cross-check and the benchmarks call.
+//
+//******************************************************************************
+
+public final class RunningStatistics
+{
+    private long count;
+    private long sum;
+    private double mean;
+    // sum of squared differences from the current mean
+    private double squares;
+
+    //***************************************************************
+    //
+    //  Method:       add
+    //
+    //  Description:  Counts one more value
+    //
+    //  Parameters:   long value
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    public void add(long value) {
+        count++;
+        sum = Math.addExact(sum, value);
+
+        double delta = value - mean;
+        mean += delta / count;
+        squares += delta * (value - mean);
+    }
+
+    //***************************************************************
+    //
+    //  Method:       merge
+    //
+    //  Description:  Adds everything other has counted into this one,
+    //                as if its values had been added here
+    //
+    //  Parameters:   RunningStatistics other
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    public void merge(RunningStatistics other) {
+        if (other.count == 0) {
+            return;
+        }
+        if (count == 0) {
+            count = other.count;
+            sum = other.sum;
+            mean = other.mean;
+            squares = other.squares;
+            return;
+        }
+        long total = count + other.count;
+        double delta = other.mean - mean;
+
+        // shift toward the other mean by its share of the values
+        mean += delta * ((double) other.count / total);
+        squares += other.squares + delta * delta * ((double) count * other.count / total);
+        sum = Math.addExact(sum, other.sum);
+        count = total;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    //***************************************************************
+    //
+    //  Method:       toStatistics
+    //
+    //  Description:  The statistics of everything counted so far, with
+    //                the population standard deviation
+    //
+    //  Parameters:   None
+    //
+    //  Returns:      Statistics result
+    //
+    //**************************************************************
+    public Statistics toStatistics() {
+        if (count == 0) {
+            return Statistics.EMPTY;
+        }
+        return new Statistics(count, sum, mean, Math.sqrt(Math.max(0.0, squares) / count));
+    }
+}
\ No newline at end of file
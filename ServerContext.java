@@ -0,0 +1,160 @@
+//******************************************************************************
+//
+//  Developer:     Cory Munselle
+//
+//  Project #:     Project 4
+//
+//  File Name:     ServerContext.java
+//
+//  Course:        COSC 4301 - Modern Programming
+//
+//  Due Date:      3/11/2022
+//
+//  Instructor:    Fred Kumi
+//
+//  Description:   The settings and shared objects every connection needs,
+//                 read once from the command line. Both engines hand the same
+//                 context to every connection they serve.
+//
+//******************************************************************************
+
+import java.util.concurrent.ThreadLocalRandom;
+
+public final class ServerContext
+{
+    // replies for this many distinct triples are kept; --cache-size=0 turns the cache off
+    private static final int DEFAULT_CACHE_SIZE = 10000;
+    // a client that sends nothing for this long is disconnected; clients send a
+    // Ping well inside it while they wait on their user
+    private static final int DEFAULT_IDLE_TIMEOUT_SECONDS = 300;
+    // once a request has started arriving, the rest of it has this long to show up
+    private static final int DEFAULT_READ_TIMEOUT_SECONDS = 30;
+    // clients keep batches under RequestProcessor.MAX_BATCH_BYTES (12 KB)
+    private static final int DEFAULT_MAX_FRAME_BYTES = 16 * 1024;
+
+    private final ResultCache cache;
+    private final ServerMetrics metrics;
+    private final ServerLog log;
+    private final RequestJournal journal;
+    private final AdmissionControl admission;
+    private final boolean echo;
+    // 1 echoes every request, n echoes about one in n
+    private final int echoSample;
+    private final int idleTimeoutMillis;
+    private final int readTimeoutMillis;
+    private final int maxFrameBytes;
+    private final int maxRequestsPerSecond;
+
+    //***************************************************************
+    //
+    //  Method:       Constructor
+    //
+    //  Description:  Reads --cache-size, --echo, --echo-sample, --journal,
+    //                --latency-target and the connection limits and
+    //                creates the shared cache, admission control,
+    //                metrics, log and journal.
+    //                A timeout or rate of 0 turns that limit off.
+    //
+    //  Parameters:   CommandLineOptions options
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    public ServerContext(CommandLineOptions options) {
+        int cacheSize = options.getInt("cache-size", DEFAULT_CACHE_SIZE);
+        this.cache = cacheSize > 0 ? new ResultCache(cacheSize) : null;
+        // overload protection is opt in, since it answers some requests with busy
+        this.admission = options.getInt("latency-target", 0) > 0 ? new AdmissionControl(options) : null;
+        this.metrics = new ServerMetrics(cache, admission);
+        // printing every request is handy when watching the console but serializes every connection on stdout
+        this.echo = options.getBoolean("echo", true);
+        this.echoSample = Math.max(1, options.getInt("echo-sample", 1));
+        this.log = new ServerLog(options);
+        this.journal = options.getString("journal", null) != null ? new RequestJournal(options, log) : null;
+
+        this.idleTimeoutMillis = options.getInt("idle-timeout", DEFAULT_IDLE_TIMEOUT_SECONDS) * 1000;
+        this.readTimeoutMillis = options.getInt("read-timeout", DEFAULT_READ_TIMEOUT_SECONDS) * 1000;
+        this.maxFrameBytes = Math.min(Utf8Frames.MAX_BODY_BYTES, options.getInt("max-frame", DEFAULT_MAX_FRAME_BYTES));
+        this.maxRequestsPerSecond = options.getInt("max-rate", 0);
+    }
+
+    //***************************************************************
+    //
+    //  Method:       newProcessor
+    //
+    //  Description:  Makes the processor for one new connection
+    //
+    //  Parameters:   boolean onEventLoop (true for an NIO connection)
+    //
+    //  Returns:      RequestProcessor processor
+    //
+    //**************************************************************
+    public RequestProcessor newProcessor(boolean onEventLoop) {
+        RequestProcessor processor = new RequestProcessor(cache, metrics, journal);
+        processor.setOnEventLoop(onEventLoop);
+        return processor;
+    }
+
+    //***************************************************************
+    //
+    //  Method:       newRateLimiter
+    //
+    //  Description:  Makes the rate limiter for one new connection
+    //
+    //  Parameters:   None
+    //
+    //  Returns:      RateLimiter limiter, or null if there is no limit
+    //
+    //**************************************************************
+    public RateLimiter newRateLimiter() {
+        return maxRequestsPerSecond > 0 ? new RateLimiter(maxRequestsPerSecond) : null;
+    }
+
+    public ResultCache getCache() {
+        return cache;
+    }
+
+    public ServerMetrics getMetrics() {
+        return metrics;
+    }
+
+    public ServerLog getLog() {
+        return log;
+    }
+
+    public RequestJournal getJournal() {
+        return journal;
+    }
+
+    public AdmissionControl getAdmission() {
+        return admission;
+    }
+
+    //***************************************************************
+    //
+    //  Method:       shouldEcho
+    //
+    //  Description:  Decides whether this request gets echoed to the
+    //                log, so a busy server can echo only a sample
+    //
+    //  Parameters:   None
+    //
+    //  Returns:      boolean echo
+    //
+    //**************************************************************
+    public boolean shouldEcho() {
+        return echo && (echoSample == 1 || ThreadLocalRandom.current().nextInt(echoSample) == 0);
+    }
+
+    public int getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    public int getReadTimeoutMillis() {
+        return readTimeoutMillis;
+    }
+
+    public int getMaxFrameBytes() {
+        return maxFrameBytes;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,388 @@
+//******************************************************************************
+//
+//  Developer:     Cory Munselle
+//
+//  Project #:     Project 4
+//
+//  File Name:     ServerLog.java
+//
+//  Course:        COSC 4301 - Modern Programming
+//
+//  Due Date:      3/11/2022
+//
+//  Instructor:    Fred Kumi
+//
+//  Description:   The server's log. Connection threads only drop a message
+//                 into a ring buffer and move on; one background thread
+//                 takes everything waiting, formats it, and writes it out in
+//                 one go, to the console or to a file that is rolled over
+//                 once it gets big. Nothing on the request path ever waits on
+//                 the console or the disk.
+//
+//  Notes:         When the buffer is full the new message is dropped and
+//                 counted instead of making the request wait, so at most the
+//                 messages that don't fit are lost and the log says how many.
+//
+//                 Options:
+//                   --log-level    debug, info, warn or error (info)
+//                   --log-file     write here instead of the console
+//                   --log-bytes    roll the file over past this size (10 MB)
+//                   --log-files    rolled files to keep, file.1 newest (5)
+//                   --log-buffer   messages the buffer holds (8192)
+//
+//******************************************************************************
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+public final class ServerLog implements AutoCloseable
+{
+    public static final int DEBUG = 0;
+    public static final int INFO = 1;
+    public static final int WARN = 2;
+    public static final int ERROR = 3;
+
+    private static final String[] LEVEL_NAMES = {"DEBUG", "INFO", "WARN", "ERROR"};
+
+    private static final int DEFAULT_BUFFER_MESSAGES = 8192;
+    private static final int DEFAULT_FILE_BYTES = 10 * 1024 * 1024;
+    private static final int DEFAULT_FILE_COUNT = 5;
+    // the writer checks for messages at least this often even if nobody wakes it
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private static final DateTimeFormatter TIMESTAMP =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+
+    private final int level;
+    private final File file;
+    private final long fileBytes;
+    private final int fileCount;
+
+    // a slot is null until the message claimed for it has been stored
+    private final AtomicReferenceArray<Entry> ring;
+    private final int mask;
+    private final AtomicLong claimed = new AtomicLong();
+    // everything before this has been taken by the writer; only it writes this
+    private volatile long consumed;
+    private final LongAdder dropped = new LongAdder();
+
+    private final Thread writer;
+    private volatile boolean sleeping;
+    private volatile boolean closed;
+
+    // only touched by the writer thread
+    private Writer out;
+    private long outBytes;
+    private final StringBuilder batch = new StringBuilder();
+
+    //***************************************************************
+    //
+    //  Method:       Constructor
+    //
+    //  Description:  Reads the --log options and starts the writer
+    //
+    //  Parameters:   CommandLineOptions options
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    public ServerLog(CommandLineOptions options) {
+        this.level = parseLevel(options.getString("log-level", "info"));
+        String path = options.getString("log-file", null);
+        this.file = path == null ? null : new File(path);
+        this.fileBytes = options.getInt("log-bytes", DEFAULT_FILE_BYTES);
+        this.fileCount = Math.max(1, options.getInt("log-files", DEFAULT_FILE_COUNT));
+
+        // rounded up to a power of two so a slot is a mask away
+        int capacity = Integer.highestOneBit(Math.max(2, options.getInt("log-buffer", DEFAULT_BUFFER_MESSAGES) - 1)) << 1;
+        this.ring = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+
+        try {
+            this.out = file == null ? consoleWriter() : openFile();
+        }
+        catch (IOException e) {
+            throw new IllegalArgumentException("Unable to open the log file " + path + ": " + e.getMessage(), e);
+        }
+
+        writer = new Thread(this::drain, "log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    private static int parseLevel(String name) {
+        for (int i = 0; i < LEVEL_NAMES.length; i++) {
+            if (LEVEL_NAMES[i].equalsIgnoreCase(name)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unknown log level: " + name + " (expected debug, info, warn or error)");
+    }
+
+    public boolean isEnabled(int messageLevel) {
+        return messageLevel >= level;
+    }
+
+    public void debug(String message) {
+        log(DEBUG, message, null);
+    }
+
+    public void info(String message) {
+        log(INFO, message, null);
+    }
+
+    public void warn(String message) {
+        log(WARN, message, null);
+    }
+
+    public void error(String message, Throwable error) {
+        log(ERROR, message, error);
+    }
+
+    //***************************************************************
+    //
+    //  Method:       log
+    //
+    //  Description:  Hands a message to the writer without waiting.
+    //                The stack trace, if any, is formatted later on the
+    //                writer thread.
+    //
+    //  Parameters:   int messageLevel, String message,
+    //                Throwable error (or null)
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    public void log(int messageLevel, String message, Throwable error) {
+        if (messageLevel < level) {
+            return;
+        }
+        if (closed) {
+            dropped.increment();
+            return;
+        }
+        Entry entry = new Entry(System.currentTimeMillis(), messageLevel, Thread.currentThread().getName(), message, error);
+
+        long slot;
+        do {
+            slot = claimed.get();
+            if (slot - consumed > mask) {
+                // full; losing this message beats making a request wait for the disk
+                dropped.increment();
+                return;
+            }
+        }
+        while (!claimed.compareAndSet(slot, slot + 1));
+
+        ring.set((int) slot & mask, entry);
+        if (sleeping) {
+            sleeping = false;
+            LockSupport.unpark(writer);
+        }
+    }
+
+    //***************************************************************
+    //
+    //  Method:       getDropped
+    //
+    //  Description:  How many messages were thrown away because the
+    //                buffer was full
+    //
+    //  Parameters:   None
+    //
+    //  Returns:      long count
+    //
+    //**************************************************************
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    //***************************************************************
+    //
+    //  Method:       close
+    //
+    //  Description:  Writes out everything already logged and stops the
+    //                writer. Messages logged after this are dropped.
+    //
+    //  Parameters:   None
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    //***************************************************************
+    //
+    //  Method:       drain
+    //
+    //  Description:  The writer thread. Takes every message waiting in
+    //                the ring, writes them as one batch, and sleeps when
+    //                there is nothing to do.
+    //
+    //  Parameters:   None
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    private void drain() {
+        long head = consumed;
+        long reportedDrops = 0;
+
+        while (true) {
+            boolean stopping = closed;
+            Entry entry;
+            while ((entry = ring.get((int) head & mask)) != null) {
+                ring.set((int) head & mask, null);
+                head++;
+                format(entry);
+            }
+            consumed = head;
+
+            long drops = dropped.sum();
+            if (drops != reportedDrops) {
+                batch.append(TIMESTAMP.format(Instant.now())).append(" WARN  [log-writer] ")
+                        .append(drops - reportedDrops).append(" log message(s) dropped, the buffer was full\n");
+                reportedDrops = drops;
+            }
+            if (batch.length() > 0) {
+                write();
+            }
+            // one more pass after close so nothing logged before it is lost
+            if (stopping && claimed.get() == head) {
+                break;
+            }
+
+            sleeping = true;
+            if (ring.get((int) head & mask) == null && !closed) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+            sleeping = false;
+        }
+
+        try {
+            out.flush();
+            if (file != null) {
+                out.close();
+            }
+        }
+        catch (IOException e) {
+            System.err.println("Failed to close the log: " + e.getMessage());
+        }
+    }
+
+    private void format(Entry entry) {
+        batch.append(TIMESTAMP.format(Instant.ofEpochMilli(entry.time))).append(' ')
+                .append(LEVEL_NAMES[entry.level]);
+        for (int i = LEVEL_NAMES[entry.level].length(); i < 6; i++) {
+            batch.append(' ');
+        }
+        batch.append('[').append(entry.thread).append("] ").append(entry.message).append('\n');
+
+        if (entry.error != null) {
+            StringWriter trace = new StringWriter();
+            entry.error.printStackTrace(new PrintWriter(trace));
+            batch.append(trace);
+        }
+    }
+
+    //***************************************************************
+    //
+    //  Method:       write
+    //
+    //  Description:  Writes and flushes the batch, rolling the file
+    //                over first if it would grow past its limit
+    //
+    //  Parameters:   None
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    private void write() {
+        try {
+            if (file != null && outBytes > 0 && outBytes + batch.length() > fileBytes) {
+                roll();
+            }
+            out.append(batch);
+            out.flush();
+            outBytes += batch.length();
+        }
+        catch (IOException e) {
+            System.err.println("Failed to write the log: " + e.getMessage());
+        }
+        batch.setLength(0);
+    }
+
+    private void roll() throws IOException {
+        out.close();
+        // file.(n-1) becomes file.n and so on down, and the current file becomes file.1
+        new File(file.getPath() + "." + fileCount).delete();
+        for (int i = fileCount - 1; i >= 1; i--) {
+            new File(file.getPath() + "." + i).renameTo(new File(file.getPath() + "." + (i + 1)));
+        }
+        file.renameTo(new File(file.getPath() + ".1"));
+        out = openFile();
+    }
+
+    private Writer openFile() throws IOException {
+        outBytes = file.length();
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8), 64 * 1024);
+    }
+
+    private static Writer consoleWriter() {
+        OutputStream console = System.out;
+        return new BufferedWriter(new OutputStreamWriter(console, StandardCharsets.UTF_8), 64 * 1024);
+    }
+
+    //******************************************************************************
+    //
+    //  Class:         Entry
+    //
+    //  Description:   One message waiting in the ring
+    //
+    //******************************************************************************
+    private static final class Entry
+    {
+        private final long time;
+        private final int level;
+        private final String thread;
+        private final String message;
+        private final Throwable error;
+
+        private Entry(long time, int level, String thread, String message, Throwable error) {
+            this.time = time;
+            this.level = level;
+            this.thread = thread;
+            this.message = message;
+            this.error = error;
+        }
+    }
+}
\ No newline at end of file
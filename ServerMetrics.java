@@ -0,0 +1,267 @@
+//******************************************************************************
+//
+//  Developer:     Cory Munselle
+//
+//  Project #:     Project 4
+//
+//  File Name:     ServerMetrics.java
+//
+//  Course:        COSC 4301 - Modern Programming
+//
+//  Due Date:      3/11/2022
+//
+//  Instructor:    Fred Kumi
+//
+//  Description:   Counts what the server is doing: requests, failed requests
+//                 by message, open connections, bytes each way, and how long
+//                 each stage of a request takes (read, parse, compute, write).
+//                 One instance is shared by every connection, and everything
+//                 in it is lock free, so recording never makes a connection
+//                 wait on another one.
+//
+//  Notes:         The stages are timed with System.nanoTime. Read is the time
+//                 to take a frame in once it started arriving, parse is
+//                 finding the three numbers, compute is validating,
+//                 calculating, formatting and encoding (or the cache lookup),
+//                 and write is handing replies to the socket.
+//
+//******************************************************************************
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+public final class ServerMetrics implements ServerMetricsMXBean
+{
+    public static final String OBJECT_NAME = "Project4:type=ServerMetrics";
+
+    private final LatencyHistogram read = new LatencyHistogram();
+    private final LatencyHistogram parse = new LatencyHistogram();
+    private final LatencyHistogram compute = new LatencyHistogram();
+    private final LatencyHistogram write = new LatencyHistogram();
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder[] errors = new LongAdder[RequestStatus.COUNT];
+    private final LongAdder activeConnections = new LongAdder();
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+
+    private final ResultCache cache;
+    private final AdmissionControl admission;
+
+    //***************************************************************
+    //
+    //  Method:       Constructor
+    //
+    //  Description:  Defines variables for use in the program
+    //
+    //  Parameters:   ResultCache cache (null if there isn't one),
+    //                AdmissionControl admission (null if it's off)
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    public ServerMetrics(ResultCache cache, AdmissionControl admission) {
+        this.cache = cache;
+        this.admission = admission;
+        for (int i = 0; i < errors.length; i++) {
+            errors[i] = new LongAdder();
+        }
+    }
+
+    //***************************************************************
+    //
+    //  Method:       register
+    //
+    //  Description:  Publishes the metrics on the platform MBean server
+    //                so JMX clients can read them
+    //
+    //  Parameters:   None
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    public void register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+        }
+        catch (JMException e) {
+            System.err.println("Unable to publish the server metrics over JMX: " + e.getMessage());
+        }
+    }
+
+    public void recordRead(long nanos) {
+        read.record(nanos);
+    }
+
+    public void recordParse(long nanos) {
+        parse.record(nanos);
+    }
+
+    public void recordCompute(long nanos) {
+        compute.record(nanos);
+    }
+
+    public void recordWrite(long nanos) {
+        write.record(nanos);
+    }
+
+    //***************************************************************
+    //
+    //  Method:       recordStatus
+    //
+    //  Description:  Counts one answered request, and the error if it
+    //                failed
+    //
+    //  Parameters:   int status
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    public void recordStatus(int status) {
+        requests.increment();
+        if (status != RequestStatus.OK) {
+            errors[status].increment();
+        }
+    }
+
+    public void connectionOpened() {
+        activeConnections.increment();
+    }
+
+    public void connectionClosed() {
+        activeConnections.decrement();
+    }
+
+    public void addBytesIn(long bytes) {
+        bytesIn.add(bytes);
+    }
+
+    public void addBytesOut(long bytes) {
+        bytesOut.add(bytes);
+    }
+
+    @Override
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    @Override
+    public Map<String, Long> getErrors() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+
+        for (int status = RequestStatus.INVALID_COUNT; status < errors.length; status++) {
+            counts.put(RequestStatus.message(status), errors[status].sum());
+        }
+        return counts;
+    }
+
+    @Override
+    public long getActiveConnections() {
+        return activeConnections.sum();
+    }
+
+    @Override
+    public long getBytesIn() {
+        return bytesIn.sum();
+    }
+
+    @Override
+    public long getBytesOut() {
+        return bytesOut.sum();
+    }
+
+    @Override
+    public long getCacheHits() {
+        return cache == null ? 0L : cache.getHits();
+    }
+
+    @Override
+    public long getCacheMisses() {
+        return cache == null ? 0L : cache.getMisses();
+    }
+
+    @Override
+    public long getCacheEvictions() {
+        return cache == null ? 0L : cache.getEvictions();
+    }
+
+    @Override
+    public long getCacheCoalesced() {
+        return cache == null ? 0L : cache.getCoalesced();
+    }
+
+    @Override
+    public Map<String, Long> getReadLatency() {
+        return latency(read);
+    }
+
+    @Override
+    public Map<String, Long> getParseLatency() {
+        return latency(parse);
+    }
+
+    @Override
+    public Map<String, Long> getComputeLatency() {
+        return latency(compute);
+    }
+
+    @Override
+    public Map<String, Long> getWriteLatency() {
+        return latency(write);
+    }
+
+    //***************************************************************
+    //
+    //  Method:       getReport
+    //
+    //  Description:  Writes every metric out as plain text, one per line
+    //
+    //  Parameters:   None
+    //
+    //  Returns:      String report
+    //
+    //**************************************************************
+    @Override
+    public String getReport() {
+        StringBuilder report = new StringBuilder();
+
+        report.append("requests ").append(getRequests()).append('\n');
+        for (int status = RequestStatus.INVALID_COUNT; status < errors.length; status++) {
+            // some messages span two lines; keep the report one metric per line
+            report.append("errors \"").append(RequestStatus.message(status).replace("\n", ""))
+                    .append("\" ").append(errors[status].sum()).append('\n');
+        }
+        report.append("active_connections ").append(getActiveConnections()).append('\n');
+        report.append("bytes_in ").append(getBytesIn()).append('\n');
+        report.append("bytes_out ").append(getBytesOut()).append('\n');
+        if (cache != null) {
+            report.append("cache ").append(cache).append('\n');
+        }
+        if (admission != null) {
+            report.append("admission ").append(admission).append('\n');
+        }
+        report.append("read ").append(read.summary()).append('\n');
+        report.append("parse ").append(parse.summary()).append('\n');
+        report.append("compute ").append(compute.summary()).append('\n');
+        report.append("write ").append(write.summary()).append('\n');
+        return report.toString();
+    }
+
+    private static Map<String, Long> latency(LatencyHistogram histogram) {
+        Map<String, Long> values = new LinkedHashMap<>();
+
+        values.put("count", histogram.getCount());
+        values.put("mean", Math.round(histogram.getMean()));
+        values.put("p50", histogram.getValueAtPercentile(50.0));
+        values.put("p90", histogram.getValueAtPercentile(90.0));
+        values.put("p99", histogram.getValueAtPercentile(99.0));
+        values.put("p99.9", histogram.getValueAtPercentile(99.9));
+        values.put("max", histogram.getMax());
+        return values;
+    }
+}
\ No newline at end of file
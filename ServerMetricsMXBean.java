@@ -0,0 +1,55 @@
+//******************************************************************************
+//
+//  Developer:     Cory Munselle
+//
+//  Project #:     Project 4
+//
+//  File Name:     ServerMetricsMXBean.java
+//
+//  Course:        COSC 4301 - Modern Programming
+//
+//  Due Date:      3/11/2022
+//
+//  Instructor:    Fred Kumi
+//
+//  Description:   What ServerMetrics shows over JMX. Everything here can be
+//                 read with jconsole or any other JMX client while the server
+//                 is running.
+//
+//******************************************************************************
+
+import java.util.Map;
+
+public interface ServerMetricsMXBean
+{
+    long getRequests();
+
+    // failed requests, keyed by the message the client was sent
+    Map<String, Long> getErrors();
+
+    long getActiveConnections();
+
+    long getBytesIn();
+
+    long getBytesOut();
+
+    long getCacheHits();
+
+    long getCacheMisses();
+
+    long getCacheEvictions();
+
+    long getCacheCoalesced();
+
+    // count, mean, p50, p90, p99, p99.9 and max, in nanoseconds
+    Map<String, Long> getReadLatency();
+
+    Map<String, Long> getParseLatency();
+
+    Map<String, Long> getComputeLatency();
+
+    Map<String, Long> getWriteLatency();
+
+    // everything above as text, the same report the metrics port sends
+    String getReport();
+}
\ No newline at end of file
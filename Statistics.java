@@ -0,0 +1,91 @@
+//******************************************************************************
+//
+//  Developer:     Cory Munselle
+//
+//  Project #:     Project 4
+//
+//  File Name:     Statistics.java
+//
+//  Course:        COSC 4301 - Modern Programming
+//
+//  Due Date:      3/11/2022
+//
+//  Instructor:    Fred Kumi
+//
+//  Description:   Holds the count, sum, mean, and standard deviation of one
+//                 generated sequence and formats them for the client.
+//
+//******************************************************************************
+
+import java.nio.charset.StandardCharsets;
+
+public final class Statistics
+{
+    public static final Statistics EMPTY = new Statistics(0, 0, 0.0, 0.0);
+
+    // sum, mean, and standard deviation, in that order; ResponseEncoder writes
+    // exactly this without going through a Formatter
+    public static final String FORMAT = "Sum: %d%nMean: %.3f%nStandard deviation: %.3f";
+
+    private final long count;
+    private final long sum;
+    private final double mean;
+    private final double stddev;
+
+    //***************************************************************
+    //
+    //  Method:       Constructor
+    //
+    //  Description:  Defines variables for use in the program
+    //
+    //  Parameters:   long count, long sum, double mean, double stddev
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    public Statistics(long count, long sum, double mean, double stddev) {
+        this.count = count;
+        this.sum = sum;
+        this.mean = mean;
+        this.stddev = stddev;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getSum() {
+        return sum;
+    }
+
+    public double getMean() {
+        return mean;
+    }
+
+    public double getStddev() {
+        return stddev;
+    }
+
+    //***************************************************************
+    //
+    //  Method:       format
+    //
+    //  Description:  Builds the Sum/Mean/Standard deviation block the
+    //                client prints
+    //
+    //  Parameters:   None
+    //
+    //  Returns:      String output
+    //
+    //**************************************************************
+    public String format() {
+        byte[] text = new byte[ResponseEncoder.MAX_BODY_BYTES];
+        int length = ResponseEncoder.putStatistics(sum, mean, stddev, text, 0);
+        return new String(text, 0, length, StandardCharsets.US_ASCII);
+    }
+
+    @Override
+    public String toString() {
+        return "Statistics[count=" + count + ", sum=" + sum + ", mean=" + mean + ", stddev=" + stddev + "]";
+    }
+}
\ No newline at end of file
@@ -0,0 +1,233 @@
+//******************************************************************************
+//
+//  Developer:     Cory Munselle
+//
+//  Project #:     Project 4
+//
+//  File Name:     StatisticsEngine.java
+//
+//  Course:        COSC 4301 - Modern Programming
+//
+//  Due Date:      3/11/2022
+//
+//  Instructor:    Fred Kumi
+//
+//  Description:   Calculates the sum, mean, and standard deviation of the
+//                 sequence a client asks for. The sequence is always an
+//                 arithmetic progression, so the answer comes from closed
+//                 forms in constant time and memory instead of from a list
+//                 holding every value.
+//
+//  Notes:         computeIterative is the original ArrayList version. It is
+//                 kept as the reference the closed forms are checked against
+//                 (run the server with -ea to cross-check every small request).
+//
+//                 The accumulate methods walk a sequence one value at a time
+//                 through a RunningStatistics, for sequences that have no
+//                 closed form. They never hold more than one value, and long
+//                 sequences are split across cores by ParallelAccumulator.
+//                 They are library and verification code only: every request
+//                 the server answers is an arithmetic progression, so compute
+//                 never calls them. The server only reaches them through
+//                 matchesReference under -ea, and only for sequences under
+//                 REFERENCE_LIMIT, which is below the point where
+//                 ParallelAccumulator splits anything.
+//
+//                 There is deliberately no precomputed table of prefix sums.
+//                 The closed forms already answer any range in a handful of
+//                 multiplies, while a table would be two lookups into tens of
+//                 megabytes per million values of number2, slower once it
+//                 falls out of cache and only good below its limit.
+//
+//******************************************************************************
+
+import java.util.ArrayList;
+import java.util.function.LongUnaryOperator;
+
+public final class StatisticsEngine
+{
+    // the sequence generated for a request counts up by two
+    public static final int SEQUENCE_STEP = 2;
+
+    // largest sequence the reference is allowed to build during a cross-check
+    public static final long REFERENCE_LIMIT = 100_000;
+
+    private static final double TOLERANCE = 1e-9;
+
+    private StatisticsEngine() {
+    }
+
+    //***************************************************************
+    //
+    //  Method:       compute
+    //
+    //  Description:  Calculates the statistics of the sequence
+    //                number1 + number3, number1 + number3 + 2, ...
+    //                up to but not including number2. The numbers
+    //                are expected to be validated already.
+    //
+    //  Parameters:   int number1, int number2, int number3
+    //
+    //  Returns:      Statistics result
+    //
+    //**************************************************************
+    public static Statistics compute(int number1, int number2, int number3) {
+        return arithmetic((long) number1 + number3, SEQUENCE_STEP, sequenceCount(number1, number2, number3));
+    }
+
+    //***************************************************************
+    //
+    //  Method:       sequenceCount
+    //
+    //  Description:  Counts the values number1 + number3, then every
+    //                SEQUENCE_STEP after it, that stay below number2
+    //
+    //  Parameters:   int number1, int number2, int number3
+    //
+    //  Returns:      long count
+    //
+    //**************************************************************
+    public static long sequenceCount(int number1, int number2, int number3) {
+        long first = (long) number1 + number3;
+
+        if (first >= number2) {
+            return 0;
+        }
+        return (number2 - first + SEQUENCE_STEP - 1) / SEQUENCE_STEP;
+    }
+
+    //***************************************************************
+    //
+    //  Method:       arithmetic
+    //
+    //  Description:  Closed form statistics of an arithmetic progression
+    //                of count values starting at first. The sum is
+    //                exact; the population standard deviation of such a
+    //                progression is |step| * sqrt((count^2 - 1) / 12).
+    //
+    //  Parameters:   long first, long step, long count
+    //
+    //  Returns:      Statistics result
+    //
+    //**************************************************************
+    public static Statistics arithmetic(long first, long step, long count) {
+        if (count <= 0) {
+            return Statistics.EMPTY;
+        }
+        // count * (count - 1) / 2 without overflowing: halve whichever factor is even
+        long pairs = (count % 2 == 0) ? Math.multiplyExact(count / 2, count - 1)
+                                      : Math.multiplyExact(count, (count - 1) / 2);
+        long sum = Math.addExact(Math.multiplyExact(count, first), Math.multiplyExact(step, pairs));
+
+        double mean = (double) sum / count;
+        double variance = ((double) count * count - 1.0) / 12.0 * ((double) step * step);
+
+        return new Statistics(count, sum, mean, Math.sqrt(variance));
+    }
+
+    //***************************************************************
+    //
+    //  Method:       accumulate
+    //
+    //  Description:  Same result as arithmetic, but found by visiting
+    //                every value, so it works as a check on the closed
+    //                forms for any step, including negative ones
+    //
+    //  Parameters:   long first, long step, long count
+    //
+    //  Returns:      Statistics result
+    //
+    //**************************************************************
+    public static Statistics accumulate(long first, long step, long count) {
+        return accumulate(0, count, i -> first + i * step);
+    }
+
+    //***************************************************************
+    //
+    //  Method:       accumulate
+    //
+    //  Description:  Statistics of term(i) for every i from start up to
+    //                but not including end. term can be any sequence,
+    //                e.g. i -> i * i, and is generated as it's counted.
+    //
+    //  Parameters:   long start, long end, LongUnaryOperator term
+    //
+    //  Returns:      Statistics result
+    //
+    //**************************************************************
+    public static Statistics accumulate(long start, long end, LongUnaryOperator term) {
+        return ParallelAccumulator.accumulate(start, end, term);
+    }
+
+    //***************************************************************
+    //
+    //  Method:       computeIterative
+    //
+    //  Description:  Reference implementation. Builds the ArrayList of
+    //                every value and walks it the same way the server
+    //                always has.
+    //
+    //  Parameters:   int number1, int number2, int number3
+    //
+    //  Returns:      Statistics result
+    //
+    //**************************************************************
+    public static Statistics computeIterative(int number1, int number2, int number3) {
+        ArrayList<Integer> numbers = new ArrayList<>();
+        double sum = 0.0;
+        double mean = 0.0;
+        double stddev = 0.0;
+
+        for (int i = number1; i < number2-number3; i+=2) {
+            numbers.add(i + number3);
+        }
+
+        for (Integer number : numbers) {
+            sum += number;
+        }
+        if (sum != 0) {
+            mean = sum / numbers.size();
+        }
+
+        for (Integer number : numbers) {
+            stddev += Math.pow(number - mean, 2);
+        }
+
+        if (stddev != 0) {
+            stddev = Math.sqrt(stddev / numbers.size());
+        }
+        return new Statistics(numbers.size(), (long) sum, mean, stddev);
+    }
+
+    //***************************************************************
+    //
+    //  Method:       matchesReference
+    //
+    //  Description:  Cross-checks the closed forms against the reference
+    //                and the streaming accumulator for one request.
+    //                Requests too large for the reference to build are
+    //                always reported as matching.
+    //
+    //  Parameters:   int number1, int number2, int number3
+    //
+    //  Returns:      boolean matches
+    //
+    //**************************************************************
+    public static boolean matchesReference(int number1, int number2, int number3) {
+        Statistics fast = compute(number1, number2, number3);
+        if (fast.getCount() > REFERENCE_LIMIT) {
+            return true;
+        }
+        Statistics reference = computeIterative(number1, number2, number3);
+        Statistics streamed = accumulate((long) number1 + number3, SEQUENCE_STEP, fast.getCount());
+
+        return matches(fast, reference) && matches(fast, streamed);
+    }
+
+    private static boolean matches(Statistics fast, Statistics reference) {
+        return fast.getCount() == reference.getCount()
+                && fast.getSum() == reference.getSum()
+                && Math.abs(fast.getMean() - reference.getMean()) <= TOLERANCE * Math.max(1.0, Math.abs(reference.getMean()))
+                && Math.abs(fast.getStddev() - reference.getStddev()) <= TOLERANCE * Math.max(1.0, reference.getStddev());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,265 @@
+//******************************************************************************
+//
+//  Developer:     Cory Munselle
+//
+//  Project #:     Project 4
+//
+//  File Name:     TripleParser.java
+//
+//  Course:        COSC 4301 - Modern Programming
+//
+//  Due Date:      3/11/2022
+//
+//  Instructor:    Fred Kumi
+//
+//  Description:   Reads three integers out of part of a string, or straight out
+//                 of the bytes of a frame, by walking the characters. It gives
+//                 the same answer as splitting on \s+ and calling
+//                 Integer.parseInt on each token, but it doesn't build a regex,
+//                 an array, or any substrings along the way.
+//
+//******************************************************************************
+
+public final class TripleParser
+{
+    private TripleParser() {
+    }
+
+    //***************************************************************
+    //
+    //  Method:       parse
+    //
+    //  Description:  Parses text[start, end) into numbers[0..2]. Quirks
+    //                of split("\\s+") are kept: leading whitespace makes
+    //                an empty first token and trailing whitespace is
+    //                ignored.
+    //
+    //  Parameters:   CharSequence text, int start, int end, int array numbers
+    //
+    //  Returns:      int status (OK, INVALID_COUNT or NOT_A_NUMBER)
+    //
+    //**************************************************************
+    public static int parse(CharSequence text, int start, int end, int[] numbers) {
+        if (start == end) {
+            // "".split() gives back one empty token
+            return RequestStatus.INVALID_COUNT;
+        }
+        boolean leadingEmpty = isWhitespace(text.charAt(start));
+        boolean allNumbers = true;
+        int tokens = 0;
+        int index = start;
+
+        while (index < end) {
+            while (index < end && isWhitespace(text.charAt(index))) {
+                index++;
+            }
+            if (index == end) {
+                break;
+            }
+            int begin = index;
+            while (index < end && !isWhitespace(text.charAt(index))) {
+                index++;
+            }
+            // parsed right away; a bad count still wins over a bad number below
+            if (tokens < 3 && allNumbers) {
+                allNumbers = parseInt(text, begin, index, numbers, tokens);
+            }
+            tokens++;
+        }
+
+        if (tokens == 0 || tokens + (leadingEmpty ? 1 : 0) != 3) {
+            return RequestStatus.INVALID_COUNT;
+        }
+        if (leadingEmpty) {
+            // the empty first token can't be parsed as a number
+            return RequestStatus.NOT_A_NUMBER;
+        }
+        return allNumbers ? RequestStatus.OK : RequestStatus.NOT_A_NUMBER;
+    }
+
+    //***************************************************************
+    //
+    //  Method:       parse
+    //
+    //  Description:  Same as parse above, but reads the modified UTF-8
+    //                bytes of a frame directly. Every whitespace
+    //                character is a single ASCII byte, so tokens can be
+    //                found without decoding; only non-ASCII characters
+    //                inside a number are decoded, for Character.digit.
+    //
+    //  Parameters:   byte array src, int start, int end, int array numbers
+    //
+    //  Returns:      int status (OK, INVALID_COUNT or NOT_A_NUMBER)
+    //
+    //**************************************************************
+    public static int parse(byte[] src, int start, int end, int[] numbers) {
+        if (start == end) {
+            return RequestStatus.INVALID_COUNT;
+        }
+        boolean leadingEmpty = isWhitespace(src[start]);
+        boolean allNumbers = true;
+        int tokens = 0;
+        int index = start;
+
+        while (index < end) {
+            while (index < end && isWhitespace(src[index])) {
+                index++;
+            }
+            if (index == end) {
+                break;
+            }
+            int begin = index;
+            while (index < end && !isWhitespace(src[index])) {
+                index++;
+            }
+            if (tokens < 3 && allNumbers) {
+                allNumbers = parseInt(src, begin, index, numbers, tokens);
+            }
+            tokens++;
+        }
+
+        if (tokens == 0 || tokens + (leadingEmpty ? 1 : 0) != 3) {
+            return RequestStatus.INVALID_COUNT;
+        }
+        if (leadingEmpty) {
+            return RequestStatus.NOT_A_NUMBER;
+        }
+        return allNumbers ? RequestStatus.OK : RequestStatus.NOT_A_NUMBER;
+    }
+
+    //***************************************************************
+    //
+    //  Method:       parseInt
+    //
+    //  Description:  Integer.parseInt on the modified UTF-8 bytes
+    //                src[start, end). Malformed bytes count as a
+    //                character that isn't a digit.
+    //
+    //  Parameters:   byte array src, int start, int end,
+    //                int array numbers, int slot
+    //
+    //  Returns:      boolean parsed
+    //
+    //**************************************************************
+    private static boolean parseInt(byte[] src, int start, int end, int[] numbers, int slot) {
+        boolean negative = false;
+        int limit = -Integer.MAX_VALUE;
+        int index = start;
+        byte first = src[index];
+
+        if (first >= 0 && first < '0') {
+            if (first == '-') {
+                negative = true;
+                limit = Integer.MIN_VALUE;
+            }
+            else if (first != '+') {
+                return false;
+            }
+            if (end - start == 1) {
+                return false;
+            }
+            index++;
+        }
+        int multiplyLimit = limit / 10;
+        int result = 0;
+        while (index < end) {
+            int b = src[index] & 0xFF;
+            int c;
+            if (b < 0x80) {
+                c = b;
+                index += 1;
+            }
+            else if ((b & 0xE0) == 0xC0 && index + 1 < end) {
+                c = ((b & 0x1F) << 6) | (src[index + 1] & 0x3F);
+                index += 2;
+            }
+            else if ((b & 0xF0) == 0xE0 && index + 2 < end) {
+                c = ((b & 0x0F) << 12) | ((src[index + 1] & 0x3F) << 6) | (src[index + 2] & 0x3F);
+                index += 3;
+            }
+            else {
+                return false;
+            }
+            int digit = Character.digit((char) c, 10);
+            if (digit < 0 || result < multiplyLimit) {
+                return false;
+            }
+            result *= 10;
+            if (result < limit + digit) {
+                return false;
+            }
+            result -= digit;
+        }
+        numbers[slot] = negative ? result : -result;
+        return true;
+    }
+
+    //***************************************************************
+    //
+    //  Method:       parseInt
+    //
+    //  Description:  Integer.parseInt on text[start, end) that reports
+    //                failure instead of throwing
+    //
+    //  Parameters:   CharSequence text, int start, int end,
+    //                int array numbers, int slot
+    //
+    //  Returns:      boolean parsed
+    //
+    //**************************************************************
+    private static boolean parseInt(CharSequence text, int start, int end, int[] numbers, int slot) {
+        boolean negative = false;
+        int limit = -Integer.MAX_VALUE;
+        int index = start;
+        char first = text.charAt(index);
+
+        if (first < '0') {
+            if (first == '-') {
+                negative = true;
+                limit = Integer.MIN_VALUE;
+            }
+            else if (first != '+') {
+                return false;
+            }
+            if (end - start == 1) {
+                return false;
+            }
+            index++;
+        }
+        // accumulated negatively like Integer.parseInt so MIN_VALUE fits
+        int multiplyLimit = limit / 10;
+        int result = 0;
+        while (index < end) {
+            int digit = Character.digit(text.charAt(index++), 10);
+            if (digit < 0 || result < multiplyLimit) {
+                return false;
+            }
+            result *= 10;
+            if (result < limit + digit) {
+                return false;
+            }
+            result -= digit;
+        }
+        numbers[slot] = negative ? result : -result;
+        return true;
+    }
+
+    //***************************************************************
+    //
+    //  Method:       isWhitespace
+    //
+    //  Description:  The characters \s matches in a Java regex
+    //
+    //  Parameters:   char c
+    //
+    //  Returns:      boolean whitespace
+    //
+    //**************************************************************
+    public static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == 0x0B || b == '\f' || b == '\r';
+    }
+}
\ No newline at end of file
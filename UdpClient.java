@@ -0,0 +1,206 @@
+//******************************************************************************
+//
+//  Developer:     Cory Munselle
+//
+//  Project #:     Project 4
+//
+//  File Name:     UdpClient.java
+//
+//  Course:        COSC 4301 - Modern Programming
+//
+//  Due Date:      3/11/2022
+//
+//  Instructor:    Fred Kumi
+//
+//  Description:   Asks the server for statistics over UDP, so a one off query
+//                 costs one datagram each way instead of a connection. Started
+//                 with "Project4Client --udp" it works like the console client;
+//                 programs can call compute directly. The server has to be
+//                 started with --udp (or --udp-port, then given here as
+//                 --port).
+//
+//  Notes:         Datagrams can be lost, so a request that isn't answered in
+//                 time is sent again with the same id, waiting twice as long
+//                 each time. Any answer carrying that id will do, since every
+//                 copy of a request gets the same answer. Answers with another
+//                 id are late replies to earlier requests and are ignored.
+//
+//                 Options:
+//                   --host, --port  server to ask (the port is its --udp-port,
+//                                   UdpServerEngine.DEFAULT_PORT by default)
+//                   --udp-timeout   wait for the first answer, in milliseconds
+//                                   (200)
+//                   --udp-retries   extra attempts after a timeout (4)
+//
+//******************************************************************************
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.PortUnreachableException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.Scanner;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+public class UdpClient implements Closeable
+{
+    private static final int DEFAULT_TIMEOUT_MILLIS = 200;
+    private static final int DEFAULT_RETRIES = 4;
+    // doubling stops here, so a long run of retries doesn't wait for minutes
+    private static final int MAX_TIMEOUT_MILLIS = 5000;
+
+    private final DatagramSocket socket;
+    private final int timeoutMillis;
+    private final int retries;
+
+    private final ByteBuffer request = ByteBuffer.allocate(BinaryProtocol.DATAGRAM_REQUEST_BYTES);
+    // one byte spare, so a reply that is too long doesn't pass for a good one
+    private final byte[] reply = new byte[BinaryProtocol.DATAGRAM_RESPONSE_BYTES + 1];
+    // a random start keeps ids from lining up with an earlier client that had the same port
+    private long nextId = ThreadLocalRandom.current().nextLong();
+
+    //***************************************************************
+    //
+    //  Method:       Constructor
+    //
+    //  Description:  Reads the options and opens a socket that only
+    //                takes datagrams from the server
+    //
+    //  Parameters:   CommandLineOptions options
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    public UdpClient(CommandLineOptions options) throws IOException {
+        this.timeoutMillis = Math.max(1, options.getInt("udp-timeout", DEFAULT_TIMEOUT_MILLIS));
+        this.retries = Math.max(0, options.getInt("udp-retries", DEFAULT_RETRIES));
+        this.socket = new DatagramSocket();
+        socket.connect(new InetSocketAddress(options.getString("host", "127.0.0.1"),
+                options.getInt("port", UdpServerEngine.DEFAULT_PORT)));
+    }
+
+    //***************************************************************
+    //
+    //  Method:       compute
+    //
+    //  Description:  Asks the server for the statistics of one triple,
+    //                sending it again whenever an answer doesn't come
+    //                in time. A request the server turns down throws
+    //                InvalidRequestException.
+    //
+    //  Parameters:   int number1, int number2, int number3
+    //
+    //  Returns:      Statistics result
+    //
+    //**************************************************************
+    public synchronized Statistics compute(int number1, int number2, int number3) throws IOException {
+        long id = nextId++;
+        request.clear();
+        request.putLong(id);
+        BinaryProtocol.putRequest(request, BinaryProtocol.COMPUTE, number1, number2, number3);
+        DatagramPacket out = new DatagramPacket(request.array(), request.position());
+        int wait = timeoutMillis;
+
+        for (int attempt = 0; attempt <= retries; attempt++) {
+            socket.send(out);
+            if (awaitReply(id, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(wait))) {
+                return BinaryProtocol.readResponse(new DataInputStream(
+                        new ByteArrayInputStream(reply, BinaryProtocol.ID_BYTES, BinaryProtocol.RESPONSE_BYTES)));
+            }
+            wait = Math.min(MAX_TIMEOUT_MILLIS, wait * 2);
+        }
+        throw new SocketTimeoutException("No reply from the server after " + (retries + 1) + " attempts");
+    }
+
+    //***************************************************************
+    //
+    //  Method:       awaitReply
+    //
+    //  Description:  Waits until the deadline for the answer to id,
+    //                skipping any others that arrive first
+    //
+    //  Parameters:   long id, long deadline (System.nanoTime)
+    //
+    //  Returns:      boolean true if the answer is in reply
+    //
+    //**************************************************************
+    private boolean awaitReply(long id, long deadline) throws IOException {
+        DatagramPacket in = new DatagramPacket(reply, reply.length);
+        long remaining;
+
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            socket.setSoTimeout((int) Math.max(1, TimeUnit.NANOSECONDS.toMillis(remaining)));
+            in.setLength(reply.length);
+            try {
+                socket.receive(in);
+            }
+            catch (SocketTimeoutException e) {
+                return false;
+            }
+            catch (PortUnreachableException e) {
+                // nothing is listening yet; wait out the timeout anyway so the retries are spread out
+                continue;
+            }
+            if (in.getLength() == BinaryProtocol.DATAGRAM_RESPONSE_BYTES && ByteBuffer.wrap(reply).getLong(0) == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //***************************************************************
+    //
+    //  Method:       run
+    //
+    //  Description:  Console mode. Reads triples from the user until
+    //                Bye and prints each answer the same way the TCP
+    //                client would.
+    //
+    //  Parameters:   None
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    public void run() {
+        Scanner userInput = new Scanner(System.in);
+        System.out.println("Please supply three positive integers separated by spaces. If you wish to quit, type 'Bye'.");
+        System.out.println("Several sets of three can be sent at once by separating them with ';'.");
+        int[] numbers = new int[3];
+
+        while (userInput.hasNextLine()) {
+            String line = userInput.nextLine();
+            if (line.equals(RequestProcessor.BYE)) {
+                break;
+            }
+            // every triple goes through untouched so it is judged exactly like text mode would
+            String[] triples = line.split(";", -1);
+            for (String triple : triples) {
+                int status = TripleParser.parse(triple, 0, triple.length(), numbers);
+                if (status != RequestStatus.OK) {
+                    System.out.println(RequestStatus.message(status));
+                    continue;
+                }
+                try {
+                    System.out.println(compute(numbers[0], numbers[1], numbers[2]).format());
+                }
+                catch (InvalidRequestException e) {
+                    System.out.println(e.getMessage());
+                }
+                catch (IOException e) {
+                    System.out.println("Failed to get an answer from the server: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        socket.close();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,185 @@
+//******************************************************************************
+//
+//  Developer:     Cory Munselle
+//
+//  Project #:     Project 4
+//
+//  File Name:     UdpServerEngine.java
+//
+//  Course:        COSC 4301 - Modern Programming
+//
+//  Due Date:      3/11/2022
+//
+//  Instructor:    Fred Kumi
+//
+//  Description:   Answers single binary requests sent as UDP datagrams, for
+//                 clients that only want one answer and don't want to pay for
+//                 a connection to get it. Each datagram holds a request id and
+//                 one binary request, and is answered with one datagram holding
+//                 the same id and the binary response. It runs next to the TCP
+//                 engine when the server is started with --udp (on
+//                 DEFAULT_PORT) or --udp-port.
+//
+//  Notes:         Nothing is kept between datagrams. A client that hears
+//                 nothing back just sends the request again, which is safe
+//                 because answering a triple twice changes nothing. The triple
+//                 is validated exactly like a text or binary request.
+//
+//                 There are no connections, so there is no per client rate
+//                 limit either. Admission control doesn't apply to UDP. One
+//                 thread answers datagrams one after another, so it never
+//                 has more than one in flight for the limit to count. The
+//                 time a datagram waited in the socket buffer can't be
+//                 seen, so there is no wait to shed on either. When the
+//                 port is overloaded the kernel drops datagrams, and the
+//                 client's retries with backoff do the shedding.
+//
+//******************************************************************************
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+
+public class UdpServerEngine implements Runnable
+{
+    // one above the TCP port, so a client and server that both leave it alone agree
+    public static final int DEFAULT_PORT = Project4Server.DEFAULT_PORT + 1;
+
+    private final DatagramChannel channel;
+    private final ServerContext context;
+    private final ServerMetrics metrics;
+    private final ServerLog log;
+    private final RequestJournal journal;
+
+    //***************************************************************
+    //
+    //  Method:       Constructor
+    //
+    //  Description:  Binds the datagram channel. Nothing is answered
+    //                until run is called.
+    //
+    //  Parameters:   int port, ServerContext context
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    public UdpServerEngine(int port, ServerContext context) throws IOException {
+        this.context = context;
+        this.metrics = context.getMetrics();
+        this.log = context.getLog();
+        this.journal = context.getJournal();
+        channel = DatagramChannel.open();
+        channel.bind(new InetSocketAddress(port));
+    }
+
+    //***************************************************************
+    //
+    //  Method:       run
+    //
+    //  Description:  Receives and answers datagrams until the engine
+    //                is closed
+    //
+    //  Parameters:   None
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    @Override
+    public void run() {
+        // one byte spare, so a datagram that is too long shows up as too long instead of cut to size
+        ByteBuffer request = ByteBuffer.allocate(BinaryProtocol.DATAGRAM_REQUEST_BYTES + 1);
+        ByteBuffer response = ByteBuffer.allocate(BinaryProtocol.DATAGRAM_RESPONSE_BYTES);
+
+        while (channel.isOpen()) {
+            try {
+                request.clear();
+                SocketAddress client = channel.receive(request);
+                request.flip();
+                metrics.addBytesIn(request.remaining());
+                if (request.remaining() < BinaryProtocol.ID_BYTES) {
+                    // not even an id to answer to
+                    continue;
+                }
+
+                response.clear();
+                response.putLong(request.getLong());
+                answer(request, response);
+                response.flip();
+                metrics.addBytesOut(response.remaining());
+                channel.send(response, client);
+            }
+            catch (ClosedChannelException e) {
+                // close was called
+                return;
+            }
+            catch (IOException e) {
+                // one client's datagram going astray shouldn't stop the rest
+                log.warn("Failed to answer a datagram: " + e.getMessage());
+            }
+        }
+    }
+
+    //***************************************************************
+    //
+    //  Method:       answer
+    //
+    //  Description:  Answers the request after the id, writing the
+    //                response into response
+    //
+    //  Parameters:   ByteBuffer request (positioned after the id),
+    //                ByteBuffer response
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    private void answer(ByteBuffer request, ByteBuffer response) {
+        if (request.remaining() != BinaryProtocol.REQUEST_BYTES) {
+            BinaryProtocol.writeStatus(RequestStatus.UNKNOWN_REQUEST, response);
+            metrics.recordStatus(RequestStatus.UNKNOWN_REQUEST);
+            return;
+        }
+        byte type = request.get();
+        int number1 = request.getInt();
+        int number2 = request.getInt();
+        int number3 = request.getInt();
+        if (context.shouldEcho()) {
+            log.info("The numbers sent over UDP are: " + number1 + " " + number2 + " " + number3);
+        }
+
+        if (type == BinaryProtocol.PING) {
+            BinaryProtocol.writeStatus(RequestStatus.OK, response);
+        }
+        else if (type != BinaryProtocol.COMPUTE) {
+            // Bye means nothing without a connection
+            BinaryProtocol.writeStatus(RequestStatus.UNKNOWN_REQUEST, response);
+            metrics.recordStatus(RequestStatus.UNKNOWN_REQUEST);
+        }
+        else {
+            long computeStart = System.nanoTime();
+            int status = BinaryProtocol.answer(number1, number2, number3, response);
+            metrics.recordStatus(status);
+            metrics.recordCompute(System.nanoTime() - computeStart);
+            if (journal != null) {
+                journal.record(number1, number2, number3, status);
+            }
+        }
+    }
+
+    //***************************************************************
+    //
+    //  Method:       close
+    //
+    //  Description:  Closes the channel, which stops run
+    //
+    //  Parameters:   None
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    public void close() throws IOException {
+        channel.close();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,165 @@
+//******************************************************************************
+//
+//  Developer:     Cory Munselle
+//
+//  Project #:     Project 4
+//
+//  File Name:     Utf8Frames.java
+//
+//  Course:        COSC 4301 - Modern Programming
+//
+//  Due Date:      3/11/2022
+//
+//  Instructor:    Fred Kumi
+//
+//  Description:   Encodes and decodes the frames DataOutputStream.writeUTF and
+//                 DataInputStream.readUTF put on the wire: a two byte big endian
+//                 length followed by the string in modified UTF-8. Both engines
+//                 use these to work on raw bytes instead of readUTF strings.
+//
+//******************************************************************************
+
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+
+public final class Utf8Frames
+{
+    public static final int HEADER_BYTES = 2;
+    public static final int MAX_BODY_BYTES = 65535;
+    public static final int MAX_FRAME_BYTES = HEADER_BYTES + MAX_BODY_BYTES;
+
+    private Utf8Frames() {
+    }
+
+    //***************************************************************
+    //
+    //  Method:       encodedLength
+    //
+    //  Description:  Counts how many body bytes writeUTF would use for
+    //                the string
+    //
+    //  Parameters:   CharSequence str
+    //
+    //  Returns:      int length
+    //
+    //**************************************************************
+    public static int encodedLength(CharSequence str) {
+        int length = 0;
+
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            if (c >= 0x0001 && c <= 0x007F) {
+                length += 1;
+            }
+            else if (c <= 0x07FF) {
+                length += 2;
+            }
+            else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    //***************************************************************
+    //
+    //  Method:       encode
+    //
+    //  Description:  Writes the length header and modified UTF-8 body
+    //                for the string into dst starting at offset
+    //
+    //  Parameters:   CharSequence str, byte array dst, int offset
+    //
+    //  Returns:      int bytes written including the header
+    //
+    //**************************************************************
+    public static int encode(CharSequence str, byte[] dst, int offset) throws UTFDataFormatException {
+        int length = encodedLength(str);
+        if (length > MAX_BODY_BYTES) {
+            throw new UTFDataFormatException("encoded string too long: " + length + " bytes");
+        }
+        int index = offset;
+        dst[index++] = (byte) (length >>> 8);
+        dst[index++] = (byte) length;
+
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            if (c >= 0x0001 && c <= 0x007F) {
+                dst[index++] = (byte) c;
+            }
+            else if (c <= 0x07FF) {
+                dst[index++] = (byte) (0xC0 | ((c >> 6) & 0x1F));
+                dst[index++] = (byte) (0x80 | (c & 0x3F));
+            }
+            else {
+                dst[index++] = (byte) (0xE0 | ((c >> 12) & 0x0F));
+                dst[index++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                dst[index++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return index - offset;
+    }
+
+    //***************************************************************
+    //
+    //  Method:       bodyLength
+    //
+    //  Description:  Reads the length header at index without moving
+    //                the buffer position
+    //
+    //  Parameters:   ByteBuffer src, int index
+    //
+    //  Returns:      int body length
+    //
+    //**************************************************************
+    public static int bodyLength(ByteBuffer src, int index) {
+        return ((src.get(index) & 0xFF) << 8) | (src.get(index + 1) & 0xFF);
+    }
+
+    //***************************************************************
+    //
+    //  Method:       decode
+    //
+    //  Description:  Decodes length bytes of modified UTF-8 starting at
+    //                offset. scratch must hold at least length chars.
+    //
+    //  Parameters:   byte array src, int offset, int length, char array scratch
+    //
+    //  Returns:      String decoded
+    //
+    //**************************************************************
+    public static String decode(byte[] src, int offset, int length, char[] scratch) throws UTFDataFormatException {
+        int index = offset;
+        int end = offset + length;
+        int count = 0;
+
+        while (index < end) {
+            int b = src[index] & 0xFF;
+            if (b < 0x80) {
+                scratch[count++] = (char) b;
+                index += 1;
+            }
+            else if ((b & 0xE0) == 0xC0 && index + 1 < end) {
+                int b2 = src[index + 1];
+                if ((b2 & 0xC0) != 0x80) {
+                    throw new UTFDataFormatException("malformed input around byte " + index);
+                }
+                scratch[count++] = (char) (((b & 0x1F) << 6) | (b2 & 0x3F));
+                index += 2;
+            }
+            else if ((b & 0xF0) == 0xE0 && index + 2 < end) {
+                int b2 = src[index + 1];
+                int b3 = src[index + 2];
+                if ((b2 & 0xC0) != 0x80 || (b3 & 0xC0) != 0x80) {
+                    throw new UTFDataFormatException("malformed input around byte " + index);
+                }
+                scratch[count++] = (char) (((b & 0x0F) << 12) | ((b2 & 0x3F) << 6) | (b3 & 0x3F));
+                index += 3;
+            }
+            else {
+                throw new UTFDataFormatException("malformed input around byte " + index);
+            }
+        }
+        return new String(scratch, 0, count);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,115 @@
+//******************************************************************************
+//
+//  Developer:     Cory Munselle
+//
+//  Project #:     Project 4
+//
+//  File Name:     AllocationCheck.java
+//
+//  Course:        COSC 4301 - Modern Programming
+//
+//  Description:   Checks that the steady state request path allocates nothing.
+//                 Each case is warmed up until the JIT has compiled it, then
+//                 run a million more times while the thread's allocation
+//                 counter is watched. A case that averages more than a byte per
+//                 request fails, and the check exits with status 1, so a change
+//                 that brings allocation back is caught even if nobody reads
+//                 the -prof gc numbers.
+//
+//                     java -cp benchmarks/target/benchmarks.jar benchmarks.AllocationCheck
+//
+//  Notes:         The cached cases ask for the same triple every time, so
+//                 after the first request they only ever hit. A miss has to
+//                 store a new reply frame, so it can't be free.
+//
+//                 The good triples are ones ResponseEncoder writes itself.
+//                 Values too big to scale (sums near 10^18, as for
+//                 "1 2000000000 2") go through String.format and do allocate;
+//                 that slow path is documented there and is left out here.
+//
+//******************************************************************************
+
+package benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+
+public final class AllocationCheck
+{
+    private static final int WARMUP_REQUESTS = 2_000_000;
+    private static final int MEASURED_REQUESTS = 1_000_000;
+    // anything the JIT or the counter itself leaves behind shouldn't add up to this
+    private static final double MAX_BYTES_PER_REQUEST = 1.0;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private final int[] numbers = new int[3];
+    private final byte[] reply = new byte[65537];
+    private boolean failed;
+
+    private AllocationCheck() {
+    }
+
+    //***************************************************************
+    //
+    //  Method:       main
+    //
+    //  Description:  The main method of the program
+    //
+    //  Parameters:   String array
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    public static void main(String[] argv) throws Throwable {
+        AllocationCheck check = new AllocationCheck();
+
+        for (String request : new String[] {"1 10 1", "5 1000000 2", "1 x 2", "1 2"}) {
+            byte[] frame = request.getBytes(StandardCharsets.US_ASCII);
+            check.parse(request, frame);
+            check.respond(request, frame, "no cache, no metrics", Handles.newProcessor(0));
+            check.respond(request, frame, "cache, no metrics", Handles.newProcessor(10000));
+            check.respond(request, frame, "cache and metrics", Handles.newProcessorWithMetrics(10000));
+        }
+        if (check.failed) {
+            System.out.println("FAILED: the request path allocates.");
+            System.exit(1);
+        }
+        System.out.println("OK: the request path doesn't allocate.");
+    }
+
+    private void parse(String request, byte[] frame) throws Throwable {
+        for (int i = 0; i < WARMUP_REQUESTS; i++) {
+            int status = (int) Handles.PARSE.invokeExact(frame, 0, frame.length, numbers);
+        }
+        long before = allocatedBytes();
+        for (int i = 0; i < MEASURED_REQUESTS; i++) {
+            int status = (int) Handles.PARSE.invokeExact(frame, 0, frame.length, numbers);
+        }
+        report("parse   \"" + request + "\"", allocatedBytes() - before);
+    }
+
+    private void respond(String request, byte[] frame, String setup, Object processor) throws Throwable {
+        for (int i = 0; i < WARMUP_REQUESTS; i++) {
+            int length = (int) Handles.RESPOND.invoke(processor, frame, 0, frame.length, reply);
+        }
+        long before = allocatedBytes();
+        for (int i = 0; i < MEASURED_REQUESTS; i++) {
+            int length = (int) Handles.RESPOND.invoke(processor, frame, 0, frame.length, reply);
+        }
+        report("respond \"" + request + "\" (" + setup + ")", allocatedBytes() - before);
+    }
+
+    private void report(String name, long bytes) {
+        double perRequest = (double) bytes / MEASURED_REQUESTS;
+        boolean ok = perRequest <= MAX_BYTES_PER_REQUEST;
+
+        System.out.printf("%-4s %-55s %10d bytes  %.3f per request%n", ok ? "ok" : "FAIL", name, bytes, perRequest);
+        failed |= !ok;
+    }
+
+    private static long allocatedBytes() {
+        return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
\ No newline at end of file
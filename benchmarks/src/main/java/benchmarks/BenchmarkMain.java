@@ -0,0 +1,64 @@
+//******************************************************************************
+//
+//  Developer:     Cory Munselle
+//
+//  Project #:     Project 4
+//
+//  File Name:     BenchmarkMain.java
+//
+//  Course:        COSC 4301 - Modern Programming
+//
+//  Description:   Entry point of benchmarks.jar. It takes the usual JMH
+//                 command line and always adds the GC profiler (-prof gc) so
+//                 allocation per request is reported next to the timings.
+//
+//******************************************************************************
+
+package benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+public final class BenchmarkMain
+{
+    private BenchmarkMain() {
+    }
+
+    //***************************************************************
+    //
+    //  Method:       main
+    //
+    //  Description:  The main method of the program
+    //
+    //  Parameters:   String array
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    public static void main(String[] argv) throws Exception {
+        CommandLineOptions commandLine;
+        try {
+            commandLine = new CommandLineOptions(argv);
+        }
+        catch (CommandLineOptionException e) {
+            System.err.println("Error parsing command line: " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+        if (commandLine.shouldHelp() || commandLine.shouldList() || commandLine.shouldListProfilers()) {
+            // nothing to run; let JMH print what was asked for
+            org.openjdk.jmh.Main.main(argv);
+            return;
+        }
+
+        Options options = new OptionsBuilder()
+                .parent(commandLine)
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
\ No newline at end of file
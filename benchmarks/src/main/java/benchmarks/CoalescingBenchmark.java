@@ -0,0 +1,85 @@
+//******************************************************************************
+//
+//  Developer:     Cory Munselle
+//
+//  Project #:     Project 4
+//
+//  File Name:     CoalescingBenchmark.java
+//
+//  Course:        COSC 4301 - Modern Programming
+//
+//  Description:   Weighs what ResultCache.computeIfMissing does for a miss
+//                 that another connection is already computing. recompute is
+//                 what that caller pays to work the reply out itself, as an
+//                 NIO event loop does: a request answered with no cache.
+//                 coalesce is the bookkeeping every leader pays: registering
+//                 a future for the key, completing it and taking it out
+//                 again. Waiting only saves the follower recompute, so the
+//                 two have to stay within a small factor of each other for
+//                 an event loop to be better off computing than parking.
+//
+//  Notes:         Both run on one thread, so coalesce is its best case. Under
+//                 contention the map and the future get slower, and a
+//                 follower also has to wait for the leader.
+//
+//******************************************************************************
+
+package benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class CoalescingBenchmark
+{
+    // a short range and a long one; the closed forms shouldn't care which
+    @Param({"1 10 1", "5 1000000 2"})
+    public String request;
+
+    private final ConcurrentHashMap<Long, CompletableFuture<byte[]>> inFlight = new ConcurrentHashMap<>();
+    private final byte[] reply = new byte[65537];
+    private byte[] frame;
+    private Object processor;
+    private long key;
+
+    @Setup
+    public void setup() throws Throwable {
+        frame = request.getBytes(StandardCharsets.US_ASCII);
+        processor = Handles.newProcessor(0);
+    }
+
+    @Benchmark
+    public int recompute() throws Throwable {
+        return (int) Handles.RESPOND.invoke(processor, frame, 0, frame.length, reply);
+    }
+
+    @Benchmark
+    public Object coalesce() {
+        // a new key each time, like a miss; the frame is the one a leader would hand on
+        Long missed = key++;
+        CompletableFuture<byte[]> flight = new CompletableFuture<>();
+        CompletableFuture<byte[]> leader = inFlight.putIfAbsent(missed, flight);
+        flight.complete(reply);
+        inFlight.remove(missed, flight);
+        return leader;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,199 @@
+//******************************************************************************
+//
+//  Developer:     Cory Munselle
+//
+//  Project #:     Project 4
+//
+//  File Name:     Handles.java
+//
+//  Course:        COSC 4301 - Modern Programming
+//
+//  Description:   Method handles for the parts of the server the benchmarks
+//                 call. The server classes are in the default package, which
+//                 can't be imported from a named one (and JMH won't run a
+//                 benchmark in the default package), so they are looked up by
+//                 name once here. Every handle is static final, so the JIT
+//                 treats the calls like direct ones.
+//
+//******************************************************************************
+
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.CompletableFuture;
+
+final class Handles
+{
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.publicLookup();
+
+    static final Class<?> STATISTICS = load("Statistics");
+    static final Class<?> REQUEST_PROCESSOR = load("RequestProcessor");
+    static final Class<?> RESULT_CACHE = load("ResultCache");
+    static final Class<?> SERVER_METRICS = load("ServerMetrics");
+    static final Class<?> ADMISSION_CONTROL = load("AdmissionControl");
+    static final Class<?> COMMAND_LINE_OPTIONS = load("CommandLineOptions");
+    static final Class<?> SERVER = load("Project4Server");
+    static final Class<?> ASYNC_CLIENT = load("AsyncClient");
+
+    // int TripleParser.parse(byte[] src, int start, int end, int[] numbers)
+    static final MethodHandle PARSE = findStatic("TripleParser", "parse",
+            MethodType.methodType(int.class, byte[].class, int.class, int.class, int[].class));
+
+    // Statistics StatisticsEngine.compute(int number1, int number2, int number3)
+    static final MethodHandle COMPUTE = findStatic("StatisticsEngine", "compute",
+            MethodType.methodType(STATISTICS, int.class, int.class, int.class));
+
+    // Statistics StatisticsEngine.computeIterative(int number1, int number2, int number3)
+    static final MethodHandle COMPUTE_ITERATIVE = findStatic("StatisticsEngine", "computeIterative",
+            MethodType.methodType(STATISTICS, int.class, int.class, int.class));
+
+    // Statistics StatisticsEngine.accumulate(long first, long step, long count)
+    static final MethodHandle ACCUMULATE = findStatic("StatisticsEngine", "accumulate",
+            MethodType.methodType(STATISTICS, long.class, long.class, long.class));
+
+    // String Statistics.format()
+    static final MethodHandle FORMAT = findVirtual(STATISTICS, "format", MethodType.methodType(String.class));
+
+    // new RequestProcessor(ResultCache cache, ServerMetrics metrics)
+    static final MethodHandle NEW_PROCESSOR = findConstructor(REQUEST_PROCESSOR,
+            MethodType.methodType(void.class, RESULT_CACHE, SERVER_METRICS));
+
+    // int RequestProcessor.respond(byte[] frame, int offset, int length, byte[] reply)
+    static final MethodHandle RESPOND = findVirtual(REQUEST_PROCESSOR, "respond",
+            MethodType.methodType(int.class, byte[].class, int.class, int.class, byte[].class));
+
+    // new ServerMetrics(ResultCache cache, AdmissionControl admission)
+    static final MethodHandle NEW_METRICS = findConstructor(SERVER_METRICS,
+            MethodType.methodType(void.class, RESULT_CACHE, ADMISSION_CONTROL));
+
+    // new ResultCache(int maxEntries)
+    static final MethodHandle NEW_CACHE = findConstructor(RESULT_CACHE,
+            MethodType.methodType(void.class, int.class));
+
+    // new CommandLineOptions(String[] argv)
+    static final MethodHandle NEW_OPTIONS = findConstructor(COMMAND_LINE_OPTIONS,
+            MethodType.methodType(void.class, String[].class));
+
+    // new Project4Server(int port, CommandLineOptions options)
+    static final MethodHandle NEW_SERVER = findConstructor(SERVER,
+            MethodType.methodType(void.class, int.class, COMMAND_LINE_OPTIONS));
+
+    // void Project4Server.acceptConnection()
+    static final MethodHandle ACCEPT_CONNECTION = findVirtual(SERVER, "acceptConnection",
+            MethodType.methodType(void.class));
+
+    // new AsyncClient(String host, int port, CommandLineOptions options)
+    static final MethodHandle NEW_ASYNC_CLIENT = findConstructor(ASYNC_CLIENT,
+            MethodType.methodType(void.class, String.class, int.class, COMMAND_LINE_OPTIONS));
+
+    // CompletableFuture<Statistics> AsyncClient.compute(int number1, int number2, int number3)
+    static final MethodHandle ASYNC_COMPUTE = findVirtual(ASYNC_CLIENT, "compute",
+            MethodType.methodType(CompletableFuture.class, int.class, int.class, int.class));
+
+    // void AsyncClient.close()
+    static final MethodHandle ASYNC_CLOSE = findVirtual(ASYNC_CLIENT, "close", MethodType.methodType(void.class));
+
+    private Handles() {
+    }
+
+    //***************************************************************
+    //
+    //  Method:       newProcessor
+    //
+    //  Description:  Makes a RequestProcessor, with a result cache of
+    //                cacheSize entries or none at all if it's 0. It
+    //                doesn't record metrics.
+    //
+    //  Parameters:   int cacheSize
+    //
+    //  Returns:      Object processor
+    //
+    //**************************************************************
+    static Object newProcessor(int cacheSize) throws Throwable {
+        Object cache = cacheSize > 0 ? NEW_CACHE.invoke(cacheSize) : null;
+        return NEW_PROCESSOR.invoke(cache, null);
+    }
+
+    //***************************************************************
+    //
+    //  Method:       newProcessorWithMetrics
+    //
+    //  Description:  newProcessor, but recording into a ServerMetrics
+    //                the way a server's processors do
+    //
+    //  Parameters:   int cacheSize
+    //
+    //  Returns:      Object processor
+    //
+    //**************************************************************
+    static Object newProcessorWithMetrics(int cacheSize) throws Throwable {
+        Object cache = cacheSize > 0 ? NEW_CACHE.invoke(cacheSize) : null;
+        return NEW_PROCESSOR.invoke(cache, NEW_METRICS.invoke(cache, null));
+    }
+
+    //***************************************************************
+    //
+    //  Method:       startServer
+    //
+    //  Description:  Starts a server in this JVM with the given command
+    //                line, accepting on a daemon thread so it goes away
+    //                with the benchmark fork
+    //
+    //  Parameters:   int port, String array argv
+    //
+    //  Returns:      N/A
+    //
+    //**************************************************************
+    static void startServer(int port, String... argv) throws Throwable {
+        Object server = NEW_SERVER.invoke(port, NEW_OPTIONS.invoke(argv));
+
+        Thread acceptor = new Thread(() -> {
+            try {
+                ACCEPT_CONNECTION.invoke(server);
+            }
+            catch (Throwable e) {
+                e.printStackTrace();
+            }
+        }, "benchmark-server");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    private static Class<?> load(String name) {
+        try {
+            return Class.forName(name);
+        }
+        catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Server class " + name + " is not on the classpath", e);
+        }
+    }
+
+    private static MethodHandle findStatic(String owner, String name, MethodType type) {
+        try {
+            return LOOKUP.findStatic(load(owner), name, type);
+        }
+        catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Missing " + owner + "." + name, e);
+        }
+    }
+
+    private static MethodHandle findVirtual(Class<?> owner, String name, MethodType type) {
+        try {
+            return LOOKUP.findVirtual(owner, name, type);
+        }
+        catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Missing " + owner.getName() + "." + name, e);
+        }
+    }
+
+    private static MethodHandle findConstructor(Class<?> owner, MethodType type) {
+        try {
+            return LOOKUP.findConstructor(owner, type);
+        }
+        catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Missing constructor for " + owner.getName(), e);
+        }
+    }
+}
\ No newline at end of file
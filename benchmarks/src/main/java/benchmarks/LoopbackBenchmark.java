@@ -0,0 +1,131 @@
+//******************************************************************************
+//
+//  Developer:     Cory Munselle
+//
+//  Project #:     Project 4
+//
+//  File Name:     LoopbackBenchmark.java
+//
+//  Course:        COSC 4301 - Modern Programming
+//
+//  Description:   Times whole request/reply round trips over loopback against
+//                 a real Project4Server running in the benchmark JVM, with 1,
+//                 16 and 256 clients connected at once. Each benchmark thread
+//                 is one AsyncClient with a single connection, sending one
+//                 request at a time and waiting for its future.
+//
+//  Notes:         AsyncClient is the client that can be driven from code, so
+//                 it is what goes round the loop; Project4Client's constructor
+//                 still runs the console. AsyncClient speaks the binary
+//                 protocol, so the text protocol isn't what's timed here. Binary
+//                 requests don't go through the result cache, so the cache
+//                 size isn't a parameter any more.
+//
+//******************************************************************************
+
+package benchmarks;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class LoopbackBenchmark
+{
+    private static final int PORT = 4311;
+
+    //******************************************************************************
+    //
+    //  Class:         Server
+    //
+    //  Description:   One server per fork, shared by every client thread
+    //
+    //******************************************************************************
+    @State(Scope.Benchmark)
+    public static class Server
+    {
+        @Param({"blocking", "nio"})
+        public String engine;
+
+        @Param({"1 1000 1"})
+        public String request;
+
+        @Setup(Level.Trial)
+        public void setup() throws Throwable {
+            // the console echo isn't what's being measured
+            Handles.startServer(PORT, "--engine=" + engine, "--echo=false");
+        }
+    }
+
+    //******************************************************************************
+    //
+    //  Class:         Client
+    //
+    //  Description:   One AsyncClient (and so one connection) per benchmark
+    //                 thread
+    //
+    //******************************************************************************
+    @State(Scope.Thread)
+    public static class Client
+    {
+        private Object client;
+        private int number1;
+        private int number2;
+        private int number3;
+
+        @Setup(Level.Trial)
+        public void connect(Server server) throws Throwable {
+            String[] numbers = server.request.split(" ");
+            number1 = Integer.parseInt(numbers[0]);
+            number2 = Integer.parseInt(numbers[1]);
+            number3 = Integer.parseInt(numbers[2]);
+            client = Handles.NEW_ASYNC_CLIENT.invoke("127.0.0.1", PORT,
+                    Handles.NEW_OPTIONS.invoke(new String[] {"--connections=1"}));
+        }
+
+        @TearDown(Level.Trial)
+        public void disconnect() throws Throwable {
+            Handles.ASYNC_CLOSE.invoke(client);
+        }
+
+        private Object roundTrip() throws Throwable {
+            return ((CompletableFuture<?>) Handles.ASYNC_COMPUTE.invoke(client, number1, number2, number3)).join();
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Object roundTrip1(Client client) throws Throwable {
+        return client.roundTrip();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public Object roundTrip16(Client client) throws Throwable {
+        return client.roundTrip();
+    }
+
+    @Benchmark
+    @Threads(256)
+    public Object roundTrip256(Client client) throws Throwable {
+        return client.roundTrip();
+    }
+}
\ No newline at end of file
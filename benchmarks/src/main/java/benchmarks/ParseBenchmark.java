@@ -0,0 +1,94 @@
+//******************************************************************************
+//
+//  Developer:     Cory Munselle
+//
+//  Project #:     Project 4
+//
+//  File Name:     ParseBenchmark.java
+//
+//  Course:        COSC 4301 - Modern Programming
+//
+//  Description:   Times reading the three numbers out of a request frame, and
+//                 the whole RequestProcessor path from frame bytes to the
+//                 encoded reply frame, with and without the result cache.
+//
+//******************************************************************************
+
+package benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ParseBenchmark
+{
+    // a good small request, a good huge one, and the two common mistakes
+    @Param({"1 10 1", "1 2000000000 2", "1 x 2", "1 2"})
+    public String request;
+
+    // 0 runs without a result cache
+    @Param({"0", "10000"})
+    public int cacheSize;
+
+    private byte[] frame;
+    private final int[] numbers = new int[3];
+    private final byte[] reply = new byte[65537];
+    private Object processor;
+
+    @Setup
+    public void setup() throws Throwable {
+        // every request used here is ASCII, so this matches the modified UTF-8 on the wire
+        frame = request.getBytes(StandardCharsets.US_ASCII);
+        processor = Handles.newProcessor(cacheSize);
+    }
+
+    //***************************************************************
+    //
+    //  Method:       parse
+    //
+    //  Description:  TripleParser on its own
+    //
+    //  Parameters:   None
+    //
+    //  Returns:      int status
+    //
+    //**************************************************************
+    @Benchmark
+    public int parse() throws Throwable {
+        return (int) Handles.PARSE.invokeExact(frame, 0, frame.length, numbers);
+    }
+
+    //***************************************************************
+    //
+    //  Method:       respond
+    //
+    //  Description:  Parse, validate, calculate, format and encode, the
+    //                way both server engines answer a text frame
+    //
+    //  Parameters:   None
+    //
+    //  Returns:      int reply length
+    //
+    //**************************************************************
+    @Benchmark
+    public int respond() throws Throwable {
+        return (int) Handles.RESPOND.invoke(processor, frame, 0, frame.length, reply);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,116 @@
+//******************************************************************************
+//
+//  Developer:     Cory Munselle
+//
+//  Project #:     Project 4
+//
+//  File Name:     StatisticsBenchmark.java
+//
+//  Course:        COSC 4301 - Modern Programming
+//
+//  Description:   Times the statistics for sequences from a handful of numbers
+//                 up to a billion, and formatting the result into the reply
+//                 text. The original ArrayList version and the streaming
+//                 accumulator are timed too, but only on ranges small enough
+//                 to walk value by value.
+//
+//******************************************************************************
+
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StatisticsBenchmark
+{
+    //******************************************************************************
+    //
+    //  Class:         AnyRange
+    //
+    //  Description:   Requests "1 number2 number3" for ranges of every size
+    //
+    //******************************************************************************
+    @State(Scope.Thread)
+    public static class AnyRange
+    {
+        @Param({"10", "1000", "100000", "2000000000"})
+        public int number2;
+
+        @Param({"1", "2"})
+        public int number3;
+
+        private Object stats;
+
+        @Setup
+        public void setup() throws Throwable {
+            stats = Handles.COMPUTE.invoke(1, number2, number3);
+        }
+    }
+
+    //******************************************************************************
+    //
+    //  Class:         SmallRange
+    //
+    //  Description:   Only the ranges the ArrayList version can store
+    //
+    //******************************************************************************
+    @State(Scope.Thread)
+    public static class SmallRange
+    {
+        @Param({"10", "1000", "100000"})
+        public int number2;
+
+        @Param({"1", "2"})
+        public int number3;
+
+        private long count;
+
+        @Setup
+        public void setup() {
+            // same count StatisticsEngine.compute uses for "1 number2 number3"
+            count = Math.max(0, (number2 - 1 - number3 + 1) / 2);
+        }
+    }
+
+    @Benchmark
+    public Object compute(AnyRange range) throws Throwable {
+        return Handles.COMPUTE.invoke(1, range.number2, range.number3);
+    }
+
+    @Benchmark
+    public Object computeIterative(SmallRange range) throws Throwable {
+        return Handles.COMPUTE_ITERATIVE.invoke(1, range.number2, range.number3);
+    }
+
+    @Benchmark
+    public Object accumulate(SmallRange range) throws Throwable {
+        return Handles.ACCUMULATE.invoke(1L + range.number3, 2L, range.count);
+    }
+
+    // 16M values: past the parallel threshold, so it is split across the pool
+    @Benchmark
+    public Object accumulateLarge() throws Throwable {
+        return Handles.ACCUMULATE.invoke(2L, 2L, 1L << 24);
+    }
+
+    @Benchmark
+    public String format(AnyRange range) throws Throwable {
+        return (String) Handles.FORMAT.invoke(range.stats);
+    }
+}
\ No newline at end of file